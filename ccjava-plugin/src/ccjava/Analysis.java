@@ -0,0 +1,291 @@
+package ccjava;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.eclipse.core.runtime.CoreException;
+
+import ccjava.diffparser.GitDiffParser;
+import ccjava.diffparser.UnifiedDiffRegion;
+import ccjava.javaparser.HeadlessParsingEngine;
+import ccjava.javaparser.Parser;
+import ccjava.model.AnalysisBudget;
+import ccjava.model.BinaryExporter;
+import ccjava.model.BudgetExceededException;
+import ccjava.model.CSVExporter;
+import ccjava.model.Changeset;
+import ccjava.model.ClusterChanges;
+
+/**
+ * The analysis of one changeset: parses the source files and their patches, clusters the diff regions and exports
+ * the results to the ccjava-results folder inside the source folder.
+ *
+ * Each run creates its own parser and model, and disposes the parser at the end, so several analyses can run one
+ * after the other in the same process. An incremental analysis keeps its parser instead, so that update() only
+ * parses again the files affected by a change; it must be disposed.
+ *
+ * A run that exceeds its time, AST node or heap limit stops at the next checkpoint with a BudgetExceededException,
+ * and writes a partial results marker with the reason to the results folder. The marker is removed by the next run.
+ */
+public class Analysis {
+	public static final String RESULTS_FOLDER = "ccjava-results";
+	public static final String BINARY_RESULTS_FILENAME = "results.bin";
+	public static final String PARTIAL_RESULTS_MARKER_FILENAME = "partial.txt";
+	
+	private static final String OPTION_PROPERTY_PREFIX = "ccjava.";
+	private static final List<String> OPTION_NAMES = Arrays.asList("headless", "parserThreads", "clusterThreads", 
+			"diffScopedUses", "timeLimit", "maxAstNodes", "maxHeap");
+	
+	private String sourceDir;
+	private boolean headless;
+	private int parserThreads = 1;
+	private int clusterThreads = 1;
+	private boolean diffScopedUses;
+	private long timeLimitMillis;
+	private long maxAstNodes;
+	private long maxHeapMB;
+	private boolean incremental;
+	private Parser parser; // kept by an incremental analysis between runs
+	
+	public Analysis(String sourceDir) {
+		Validate.notNull(sourceDir);
+		
+		this.sourceDir = sourceDir;
+	}
+	
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+	
+	public void setParserThreads(int parserThreads) {
+		Validate.isTrue(parserThreads >= 1);
+		
+		this.parserThreads = parserThreads;
+	}
+	
+	public void setClusterThreads(int clusterThreads) {
+		Validate.isTrue(clusterThreads >= 1);
+		
+		this.clusterThreads = clusterThreads;
+	}
+	
+	public void setDiffScopedUses(boolean diffScopedUses) {
+		this.diffScopedUses = diffScopedUses;
+	}
+	
+	/**
+	 * Limits the time of a run, in milliseconds. 0 (default) means no limit.
+	 */
+	public void setTimeLimit(long millis) {
+		Validate.isTrue(millis >= 0);
+		
+		this.timeLimitMillis = millis;
+	}
+	
+	/**
+	 * Limits the AST nodes visited by the parser, see AnalysisBudget. 0 (default) means no limit.
+	 */
+	public void setMaxAstNodes(long maxAstNodes) {
+		Validate.isTrue(maxAstNodes >= 0);
+		
+		this.maxAstNodes = maxAstNodes;
+	}
+	
+	/**
+	 * Limits the heap in use after a garbage collection, in MB, see AnalysisBudget. 0 (default) means no limit.
+	 */
+	public void setMaxHeap(long maxHeapMB) {
+		Validate.isTrue(maxHeapMB >= 0);
+		
+		this.maxHeapMB = maxHeapMB;
+	}
+	
+	/**
+	 * Keeps the parser after run() and update(), so update() can analyze the changeset again. The parser is only 
+	 * released by dispose() or by the next run().
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * Sets an option by name: headless, parserThreads, clusterThreads, diffScopedUses, timeLimit, maxAstNodes or 
+	 * maxHeap. These are the names of the options in daemon jobs and, with the "ccjava." prefix, of the system 
+	 * properties read by the application.
+	 */
+	public void setOption(String name, String value) {
+		Validate.notNull(name);
+		Validate.notNull(value);
+		
+		switch (name) {
+		case "headless":
+			setHeadless(Boolean.parseBoolean(value));
+			break;
+		case "parserThreads":
+			setParserThreads(Integer.parseInt(value));
+			break;
+		case "clusterThreads":
+			setClusterThreads(Integer.parseInt(value));
+			break;
+		case "diffScopedUses":
+			setDiffScopedUses(Boolean.parseBoolean(value));
+			break;
+		case "timeLimit":
+			setTimeLimit(Long.parseLong(value));
+			break;
+		case "maxAstNodes":
+			setMaxAstNodes(Long.parseLong(value));
+			break;
+		case "maxHeap":
+			setMaxHeap(Long.parseLong(value));
+			break;
+		default:
+			throw new IllegalArgumentException("unknown option: " + name);
+		}
+	}
+	
+	/**
+	 * Sets the options that are given as system properties, e.g. ccjava.parserThreads.
+	 */
+	public void setOptionsFromSystemProperties() {
+		for (String name : OPTION_NAMES) {
+			String value = System.getProperty(OPTION_PROPERTY_PREFIX + name);
+			if (value != null) {
+				setOption(name, value);
+			}
+		}
+	}
+	
+	public String getSourceDir() {
+		return this.sourceDir;
+	}
+	
+	public Path getResultsDir() {
+		return Paths.get(this.sourceDir, RESULTS_FOLDER);
+	}
+	
+	public synchronized void run() throws Exception {
+		dispose(); // the parser kept by a previous run
+		AnalysisBudget budget = startRun();
+		
+		Parser parser = this.headless
+				? new Parser(this.sourceDir, new HeadlessParsingEngine(this.sourceDir))
+				: new Parser(this.sourceDir);
+		parser.setParserThreads(this.parserThreads);
+		parser.setBudget(budget);
+		
+		boolean keepParser = false;
+		try {
+			List<UnifiedDiffRegion> uniDiffRegions = null;
+			if (this.diffScopedUses) {
+				uniDiffRegions = new GitDiffParser(Paths.get(this.sourceDir)).parse();
+				parser.setChangedLines(uniDiffRegions);
+			}
+			
+			analyze(parser.parse(), uniDiffRegions, budget);
+			keepParser = this.incremental;
+		} catch (BudgetExceededException e) {
+			writePartialResultsMarker(e);
+			throw e;
+		} finally {
+			if (keepParser) {
+				this.parser = parser;
+			} else {
+				parser.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Analyzes the changeset again after some of its files changed, reusing the parser kept by the last run() of an
+	 * incremental analysis. Paths are relative to the source folder, as in the results. With diffScopedUses, the 
+	 * files whose patch changed must be given too. See Parser.update() for the files parsed again, and for the 
+	 * changes that need a new run(). If the update fails, the parser is released and run() must be called again.
+	 */
+	public synchronized void update(Collection<String> changedPaths) throws Exception {
+		Validate.notNull(changedPaths);
+		Validate.validState(this.parser != null, "no incremental run to update: %s", this.sourceDir);
+		
+		AnalysisBudget budget = startRun();
+		this.parser.setBudget(budget);
+		
+		boolean updated = false;
+		try {
+			List<UnifiedDiffRegion> uniDiffRegions = null;
+			if (this.diffScopedUses) {
+				uniDiffRegions = new GitDiffParser(Paths.get(this.sourceDir)).parse();
+				this.parser.setChangedLines(uniDiffRegions);
+			}
+			
+			analyze(this.parser.update(changedPaths), uniDiffRegions, budget);
+			updated = true;
+		} catch (BudgetExceededException e) {
+			writePartialResultsMarker(e);
+			throw e;
+		} finally {
+			if (!updated) {
+				dispose(); // the parser may be half updated
+			}
+		}
+	}
+	
+	/**
+	 * Releases the parser kept by an incremental analysis, if any.
+	 */
+	public synchronized void dispose() throws CoreException, IOException {
+		if (this.parser != null) {
+			Parser parser = this.parser;
+			this.parser = null;
+			parser.dispose();
+		}
+	}
+	
+	private AnalysisBudget startRun() throws IOException {
+		AnalysisBudget budget = new AnalysisBudget();
+		budget.setTimeLimit(this.timeLimitMillis);
+		budget.setMaxAstNodes(this.maxAstNodes);
+		budget.setMaxHeap(this.maxHeapMB * 1024 * 1024);
+		Files.deleteIfExists(getResultsDir().resolve(PARTIAL_RESULTS_MARKER_FILENAME));
+		return budget;
+	}
+	
+	/*
+	 * The diff regions are read from the patches if uniDiffRegions is null.
+	 */
+	private void analyze(Changeset changeset, List<UnifiedDiffRegion> uniDiffRegions, AnalysisBudget budget) 
+			throws IOException {
+		if (changeset.isEmpty()) {
+			return;
+		}
+		
+		if (uniDiffRegions == null) {
+			uniDiffRegions = new GitDiffParser(Paths.get(this.sourceDir)).parse();
+		}
+		changeset.addDiffRegions(uniDiffRegions, budget);
+		ClusterChanges cc = new ClusterChanges(changeset);
+		cc.setThreads(this.clusterThreads);
+		cc.setBudget(budget);
+		cc.run();
+		CSVExporter csv = new CSVExporter(changeset, cc);
+		csv.exportAsCSV(getResultsDir());
+		BinaryExporter bin = new BinaryExporter(changeset, cc);
+		bin.export(getResultsDir().resolve(BINARY_RESULTS_FILENAME));
+	}
+	
+	/*
+	 * Results are only exported at the end of a run, so the other files of the results folder, if any, are from an
+	 * earlier run.
+	 */
+	private void writePartialResultsMarker(BudgetExceededException e) throws IOException {
+		Files.createDirectories(getResultsDir());
+		Files.write(getResultsDir().resolve(PARTIAL_RESULTS_MARKER_FILENAME), 
+				(e.getMessage() + "\n").getBytes(Charset.forName("UTF-8")));
+	}
+}
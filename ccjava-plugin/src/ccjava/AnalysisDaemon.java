@@ -0,0 +1,346 @@
+package ccjava;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+
+/**
+ * Runs analyses submitted through a loopback socket, so the runtime and JDT stay loaded between analyses.
+ *
+ * Requests and responses are lines of tab-separated fields, in UTF-8:
+ * - SUBMIT, source folder, then optional name=value options of Analysis.setOption(). Answers OK and the job id.
+ * With incremental=true, the parser of the job is kept for the UPDATE requests on the same source folder, until the
+ * next incremental SUBMIT on that folder or the end of run().
+ * - UPDATE, source folder, then the paths of the source files that changed since the last job on that folder. 
+ * Analyzes the folder again, only parsing the files affected by the change (see Analysis.update()), with the 
+ * options of the incremental SUBMIT. Answers OK and the job id.
+ * - STATUS and a job id. Answers OK, the state (QUEUED, RUNNING, DONE or FAILED), the results folder and, for
+ * failed jobs, the error.
+ * - SHUTDOWN. Answers OK, stops accepting requests and ends run() after the submitted jobs are done.
+ * Invalid requests are answered with ERROR and a message.
+ *
+ * Jobs start in submission order, at most "concurrency" at a time and within the heap budget (see
+ * AnalysisScheduler). The jobs on one source folder run one after the other, so an UPDATE may be sent right after
+ * the SUBMIT it updates. The options not given in a job are taken from the system properties.
+ */
+public class AnalysisDaemon {
+	public enum JobState {
+		QUEUED,
+		RUNNING,
+		DONE,
+		FAILED,
+	}
+	
+	private static class Job {
+		public volatile JobState state = JobState.QUEUED;
+		public volatile String error;
+		public String resultsDir;
+	}
+	
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final int MAX_REMEMBERED_JOBS = 10000;
+	private static final String INCREMENTAL_OPTION = "incremental";
+	
+	private ServerSocket serverSocket;
+	private AnalysisScheduler scheduler;
+	private ExecutorService connectionExecutor;
+	private AtomicInteger lastJobId = new AtomicInteger();
+	private Map<Integer, Job> jobs; // oldest finished jobs are forgotten
+	private Map<String, Analysis> incrementalAnalyses = new HashMap<String, Analysis>(); // by source folder
+	private volatile boolean shutdown;
+	private volatile boolean headlessOnly;
+	
+	/**
+	 * Listens on the given port of the loopback address. With port 0, a free port is chosen; see getPort().
+	 */
+	public AnalysisDaemon(int port, int concurrency) throws IOException {
+		this(port, concurrency, AnalysisScheduler.getDefaultHeapBudget());
+	}
+	
+	public AnalysisDaemon(int port, int concurrency, long heapBudget) throws IOException {
+		Validate.isTrue(port >= 0);
+		
+		this.scheduler = new AnalysisScheduler(concurrency, heapBudget);
+		this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+		this.connectionExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ccjava-daemon-connection");
+				t.setDaemon(true); // open connections don't keep the process alive
+				return t;
+			}
+		});
+		this.jobs = new LinkedHashMap<Integer, Job>() {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Job> eldest) {
+				JobState state = eldest.getValue().state;
+				return size() > MAX_REMEMBERED_JOBS && (state == JobState.DONE || state == JobState.FAILED);
+			}
+		};
+	}
+	
+	/**
+	 * Makes every job headless whatever its options say, for when there is no workspace.
+	 */
+	public void setHeadlessOnly(boolean headlessOnly) {
+		this.headlessOnly = headlessOnly;
+	}
+	
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+	
+	/**
+	 * Accepts requests until shutdown, then waits for the submitted jobs.
+	 */
+	public void run() throws IOException, InterruptedException {
+		Log.info(LogCategory.DAEMON, "\n***Listening on %s", this.serverSocket.getLocalSocketAddress());
+		
+		try {
+			while (!this.shutdown) {
+				final Socket socket;
+				try {
+					socket = this.serverSocket.accept();
+				} catch (SocketException e) {
+					if (this.shutdown) {
+						break; // the server socket was closed by shutdown()
+					}
+					throw e;
+				}
+				
+				this.connectionExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						handleConnection(socket);
+					}
+				});
+			}
+		} finally {
+			shutdown();
+			this.connectionExecutor.shutdown();
+			this.scheduler.shutdown();
+			this.scheduler.awaitTermination();
+			disposeIncrementalAnalyses();
+		}
+	}
+	
+	/**
+	 * Stops accepting requests. The jobs already submitted still run.
+	 */
+	public void shutdown() {
+		this.shutdown = true;
+		try {
+			this.serverSocket.close();
+		} catch (IOException e) {
+			Log.warn(LogCategory.DAEMON, "failed to close the server socket: %s", e);
+		}
+	}
+	
+	private void handleConnection(Socket socket) {
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), CHARSET));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), CHARSET))) {
+			String request;
+			while ((request = in.readLine()) != null) {
+				String response;
+				try {
+					response = "OK" + handleRequest(request.split(FIELD_SEPARATOR));
+				} catch (IllegalArgumentException | IllegalStateException e) {
+					response = "ERROR" + FIELD_SEPARATOR + toField(e.getMessage());
+				}
+				out.print(response + "\n");
+				out.flush();
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.DAEMON, "connection failed: %s", e);
+		}
+	}
+	
+	/*
+	 * Returns the fields of the response after OK, each preceded by a separator.
+	 */
+	private String handleRequest(String[] fields) {
+		switch (fields[0]) {
+		case "SUBMIT":
+			Validate.isTrue(fields.length >= 2, "missing source folder");
+			return FIELD_SEPARATOR + submit(fields);
+		case "UPDATE":
+			Validate.isTrue(fields.length >= 2, "missing source folder");
+			return FIELD_SEPARATOR + update(fields);
+		case "STATUS":
+			Validate.isTrue(fields.length == 2, "STATUS takes a job id");
+			return status(fields[1]);
+		case "SHUTDOWN":
+			shutdown();
+			return "";
+		default:
+			throw new IllegalArgumentException("unknown request: " + fields[0]);
+		}
+	}
+	
+	private int submit(String[] fields) {
+		Validate.validState(!this.shutdown, "shutting down");
+		
+		final Analysis analysis = new Analysis(fields[1]);
+		analysis.setOptionsFromSystemProperties();
+		boolean incremental = false;
+		for (int i = 2; i < fields.length; ++i) {
+			int equalsIndex = fields[i].indexOf('=');
+			Validate.isTrue(equalsIndex > 0, "invalid option: %s", fields[i]);
+			String name = fields[i].substring(0, equalsIndex);
+			String value = fields[i].substring(equalsIndex + 1);
+			if (name.equals(INCREMENTAL_OPTION)) {
+				incremental = Boolean.parseBoolean(value);
+			} else {
+				analysis.setOption(name, value);
+			}
+		}
+		if (this.headlessOnly) {
+			analysis.setHeadless(true);
+		}
+		
+		final Analysis previousAnalysis;
+		if (incremental) {
+			analysis.setIncremental(true);
+			synchronized (this.incrementalAnalyses) {
+				previousAnalysis = this.incrementalAnalyses.put(getFolderKey(fields[1]), analysis);
+			}
+		} else {
+			previousAnalysis = null;
+		}
+		
+		return submitJob(analysis, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				if (previousAnalysis != null) {
+					previousAnalysis.dispose(); // waits for the jobs still using it
+				}
+				analysis.run();
+				return null;
+			}
+		});
+	}
+	
+	private int update(String[] fields) {
+		Validate.validState(!this.shutdown, "shutting down");
+		
+		final Analysis analysis;
+		synchronized (this.incrementalAnalyses) {
+			analysis = this.incrementalAnalyses.get(getFolderKey(fields[1]));
+		}
+		Validate.isTrue(analysis != null, "no incremental job on %s", fields[1]);
+		final List<String> changedPaths = Arrays.asList(fields).subList(2, fields.length);
+		
+		return submitJob(analysis, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				analysis.update(changedPaths);
+				return null;
+			}
+		});
+	}
+	
+	private int submitJob(Analysis analysis, final Callable<Void> work) {
+		final int jobId = this.lastJobId.incrementAndGet();
+		final Job job = new Job();
+		job.resultsDir = analysis.getResultsDir().toAbsolutePath().toString();
+		synchronized (this.jobs) {
+			this.jobs.put(jobId, job);
+		}
+		
+		try {
+			this.scheduler.submit(analysis, new Callable<Void>() {
+				@Override
+				public Void call() {
+					runJob(jobId, job, work);
+					return null;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			synchronized (this.jobs) {
+				this.jobs.remove(jobId);
+			}
+			throw new IllegalStateException("shutting down");
+		}
+		
+		Log.info(LogCategory.DAEMON, "job %d submitted: %s", jobId, analysis.getSourceDir());
+		return jobId;
+	}
+	
+	private void runJob(int jobId, Job job, Callable<Void> work) {
+		job.state = JobState.RUNNING;
+		long start = System.nanoTime();
+		try {
+			work.call();
+			job.state = JobState.DONE;
+		} catch (Throwable t) { // e.g. a StackOverflowError, the job must not stay RUNNING
+			job.error = t.toString();
+			job.state = JobState.FAILED;
+			Log.error(LogCategory.DAEMON, "job %d failed: %s", jobId, t);
+		}
+		Log.info(LogCategory.DAEMON, "job %d %s in %d ms", jobId, job.state, (System.nanoTime() - start) / 1000000);
+	}
+	
+	private void disposeIncrementalAnalyses() {
+		synchronized (this.incrementalAnalyses) {
+			for (Analysis analysis : this.incrementalAnalyses.values()) {
+				try {
+					analysis.dispose();
+				} catch (Exception e) {
+					Log.warn(LogCategory.DAEMON, "failed to dispose the analysis of %s: %s", analysis.getSourceDir(), e);
+				}
+			}
+			this.incrementalAnalyses.clear();
+		}
+	}
+	
+	private String getFolderKey(String sourceDir) {
+		return Paths.get(sourceDir).toAbsolutePath().normalize().toString();
+	}
+	
+	private String status(String jobIdField) {
+		Job job;
+		synchronized (this.jobs) {
+			job = this.jobs.get(Integer.valueOf(jobIdField));
+		}
+		Validate.isTrue(job != null, "unknown job: %s", jobIdField);
+		
+		JobState state = job.state;
+		String status = FIELD_SEPARATOR + state + FIELD_SEPARATOR + job.resultsDir;
+		if (state == JobState.FAILED) {
+			status += FIELD_SEPARATOR + toField(job.error);
+		}
+		return status;
+	}
+	
+	private String toField(String s) {
+		return String.valueOf(s).replaceAll("[\\t\\r\\n]+", " ");
+	}
+}
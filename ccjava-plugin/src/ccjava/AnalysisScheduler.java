@@ -0,0 +1,205 @@
+package ccjava;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.lang3.Validate;
+
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+
+/**
+ * Runs analyses concurrently without running out of heap. The heap cost of each analysis is estimated from the
+ * number and size of its .java and .java.patch files, and an analysis only starts when the estimated costs of the
+ * running analyses and its own fit in the heap budget. Analyses start in submission order.
+ *
+ * Analyses of the same source folder never run at the same time: each one waits for those submitted before it, e.g.
+ * an update of an incremental analysis for the run it updates. Meanwhile, the analyses of other folders submitted
+ * after it may start.
+ *
+ * An analysis whose cost alone exceeds the budget runs when nothing else is running, and nothing else starts until
+ * it is done.
+ *
+ * Analyses are admitted by whoever submits or finishes one, not by the pool threads, and only admitted analyses are
+ * handed to the pool. A cancelled analysis that wasn't admitted yet is just dropped from the queue, so it never
+ * holds up the analyses submitted after it.
+ */
+public class AnalysisScheduler {
+	/*
+	 * Measured with the headless engine: the JRE bindings and JDT need about 16 MB, and the ASTs with bindings about
+	 * 200 bytes per byte of source code. The estimate errs on the safe side.
+	 */
+	private static final long BASE_COST = 32L * 1024 * 1024;
+	private static final long COST_PER_FILE = 64L * 1024;
+	private static final long COST_PER_BYTE = 200;
+	private static final String[] INPUT_FILE_SUFFIXES = { ".java", ".java.patch" };
+	
+	private class Task<T> extends FutureTask<T> {
+		private Analysis analysis;
+		private String folderKey;
+		private long cost;
+		
+		public Task(Analysis analysis, long cost, Callable<T> callable) {
+			super(callable);
+			this.analysis = analysis;
+			this.folderKey = Paths.get(analysis.getSourceDir()).toAbsolutePath().normalize().toString();
+			this.cost = cost;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				release(this); // also when it was cancelled after being admitted, and super.run() did nothing
+			}
+		}
+		
+		@Override
+		protected void done() {
+			if (isCancelled()) {
+				cancelled(this);
+			}
+		}
+	}
+	
+	private ExecutorService executor;
+	private int concurrency;
+	private long heapBudget;
+	// guarded by this
+	private Deque<Task<?>> queue = new ArrayDeque<Task<?>>();
+	private Set<String> runningFolderKeys = new HashSet<String>();
+	private long admittedCost;
+	private int running;
+	private boolean shutdown;
+	
+	/**
+	 * Runs at most "concurrency" analyses at a time, whose estimated costs add up to at most heapBudget bytes.
+	 */
+	public AnalysisScheduler(int concurrency, long heapBudget) {
+		Validate.isTrue(concurrency >= 1);
+		Validate.isTrue(heapBudget > 0);
+		
+		this.concurrency = concurrency;
+		this.heapBudget = heapBudget;
+		this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "ccjava-analysis");
+			}
+		});
+	}
+	
+	/**
+	 * The default heap budget: three quarters of the maximum heap, leaving room for the rest of the application.
+	 */
+	public static long getDefaultHeapBudget() {
+		return Runtime.getRuntime().maxMemory() / 4 * 3;
+	}
+	
+	/**
+	 * Estimates in bytes the heap needed to analyze the given source folder.
+	 */
+	public static long estimateHeapCost(String sourceDir) {
+		File root = new File(sourceDir);
+		long cost = BASE_COST;
+		if (root.isDirectory()) {
+			for (File f : FileUtils.listFiles(root, new SuffixFileFilter(INPUT_FILE_SUFFIXES), TrueFileFilter.INSTANCE)) {
+				cost += COST_PER_FILE + f.length() * COST_PER_BYTE;
+			}
+		}
+		return cost;
+	}
+	
+	/**
+	 * Calls task once the analysis is admitted. The task is expected to run the analysis, with any bookkeeping around
+	 * it. Throws a RejectedExecutionException after shutdown().
+	 */
+	public <T> Future<T> submit(Analysis analysis, Callable<T> task) {
+		Validate.notNull(analysis);
+		Validate.notNull(task);
+		
+		Task<T> t = new Task<T>(analysis, estimateHeapCost(analysis.getSourceDir()), task);
+		synchronized (this) {
+			if (this.shutdown) {
+				throw new RejectedExecutionException("scheduler is shut down");
+			}
+			this.queue.add(t);
+			dispatch();
+		}
+		return t;
+	}
+	
+	/**
+	 * Stops accepting analyses. The analyses already submitted still run.
+	 */
+	public synchronized void shutdown() {
+		this.shutdown = true;
+		dispatch();
+	}
+	
+	public void awaitTermination() throws InterruptedException {
+		this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+	
+	/*
+	 * Hands the queued analyses to the pool in order while they fit, passing over those whose folder is taken by an
+	 * analysis that is running or queued before them. The pool is shut down once the queue is empty after shutdown(),
+	 * so that it terminates when the last analysis is done.
+	 */
+	private synchronized void dispatch() {
+		Set<String> takenFolderKeys = new HashSet<String>(this.runningFolderKeys);
+		Iterator<Task<?>> it = this.queue.iterator();
+		while (it.hasNext() && this.running < this.concurrency) {
+			Task<?> t = it.next();
+			if (!takenFolderKeys.add(t.folderKey)) {
+				continue;
+			}
+			if (this.running > 0 && this.admittedCost + t.cost > this.heapBudget) {
+				break;
+			}
+			
+			it.remove();
+			this.runningFolderKeys.add(t.folderKey);
+			++this.running;
+			this.admittedCost += t.cost;
+			Log.debug(LogCategory.SCHEDULER, "admitted %s: estimated %d MB, %d MB of %d MB in use by %d analyses",
+					t.analysis.getSourceDir(), t.cost >> 20, this.admittedCost >> 20, this.heapBudget >> 20,
+					this.running);
+			this.executor.execute(t);
+		}
+		
+		if (this.shutdown && this.queue.isEmpty()) {
+			this.executor.shutdown();
+		}
+	}
+	
+	private synchronized void release(Task<?> t) {
+		--this.running;
+		this.admittedCost -= t.cost;
+		this.runningFolderKeys.remove(t.folderKey);
+		dispatch();
+	}
+	
+	private synchronized void cancelled(Task<?> t) {
+		if (this.queue.remove(t)) {
+			dispatch(); // it may have been the head of the queue
+		}
+	}
+}
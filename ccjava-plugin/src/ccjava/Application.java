@@ -1,46 +1,28 @@
 package ccjava;
 
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 
 import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
 
-import ccjava.diffparser.GitDiffParser;
-import ccjava.diffparser.UnifiedDiffRegion;
-import ccjava.javaparser.Parser;
-import ccjava.model.CSVExporter;
-import ccjava.model.Changeset;
-import ccjava.model.ClusterChanges;
-
 public class Application implements IApplication {
+	private volatile Launcher launcher;
+	
 	public Object start(IApplicationContext context) throws Exception {
-		String sourceDir = getSourceDir(context);
-		Changeset changeset = new Parser(sourceDir).parse();
-		
-		if (!changeset.isEmpty()) {
-			List<UnifiedDiffRegion> uniDiffRegions = new GitDiffParser(Paths.get(sourceDir)).parse();
-			changeset.addDiffRegions(uniDiffRegions);
-			ClusterChanges cc = new ClusterChanges(changeset);
-			cc.run();
-			CSVExporter csv = new CSVExporter(changeset, cc);
-			csv.exportAsCSV(Paths.get(sourceDir, "ccjava-results"));
-		}
-		
+		this.launcher = new Launcher(false);
+		this.launcher.run(getApplicationArgs(context));
 		return IApplication.EXIT_OK;
 	}
-
+	
 	public void stop() {
+		Launcher l = this.launcher;
+		if (l != null) {
+			l.stop();
+		}
 	}
 	
-	private String getSourceDir(IApplicationContext context) {
+	private String[] getApplicationArgs(IApplicationContext context) {
 		Map args = context.getArguments();
-		String[] appArgs = (String[]) args.get("application.args");
-		if (appArgs.length != 1) {
-			throw new RuntimeException("invalid number of arguments: " + Arrays.asList(appArgs));
-		}
-		return appArgs[0];
+		return (String[]) args.get("application.args");
 	}
 }
@@ -0,0 +1,203 @@
+package ccjava;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+import ccjava.model.CSVWriter;
+
+/**
+ * Runs ccjava from its command-line arguments: a source folder, "--batch" and a batch, or "--daemon" and a port.
+ * Shared by the Eclipse application and the standalone launcher.
+ */
+class Launcher {
+	private static final String LOG_PROPERTY = "ccjava.log";
+	private static final String LOG_ASYNC_PROPERTY = "ccjava.logAsync";
+	private static final String DAEMON_CONCURRENCY_PROPERTY = "ccjava.daemonConcurrency";
+	private static final String BATCH_CONCURRENCY_PROPERTY = "ccjava.batchConcurrency";
+	private static final String HEAP_BUDGET_PROPERTY = "ccjava.heapBudget"; // in MB
+	
+	private static final String BATCH_OPTION = "--batch";
+	private static final String BATCH_REPORT_FILENAME = "ccjava-batch.csv";
+	private static final String DAEMON_OPTION = "--daemon";
+	
+	private static class BatchResult {
+		public String error;
+		public long millis;
+	}
+	
+	private boolean headlessOnly;
+	private volatile AnalysisDaemon daemon;
+	
+	/**
+	 * With headlessOnly, every analysis is headless whatever the options say, since there is no workspace.
+	 */
+	public Launcher(boolean headlessOnly) {
+		this.headlessOnly = headlessOnly;
+	}
+	
+	public void run(String[] args) throws Exception {
+		Log.configure(System.getProperty(LOG_PROPERTY, ""));
+		Log.setAsync(Boolean.getBoolean(LOG_ASYNC_PROPERTY));
+		
+		try {
+			if (args.length == 2 && args[0].equals(BATCH_OPTION)) {
+				runBatch(Paths.get(args[1]));
+			} else if (args.length == 2 && args[0].equals(DAEMON_OPTION)) {
+				this.daemon = new AnalysisDaemon(Integer.parseInt(args[1]), 
+						Integer.getInteger(DAEMON_CONCURRENCY_PROPERTY, 1), getHeapBudget());
+				this.daemon.setHeadlessOnly(this.headlessOnly);
+				this.daemon.run();
+			} else if (args.length == 1) {
+				createAnalysis(args[0]).run();
+			} else {
+				throw new RuntimeException("invalid arguments: " + Arrays.asList(args));
+			}
+		} finally {
+			Log.close();
+		}
+	}
+	
+	public void stop() {
+		AnalysisDaemon d = this.daemon;
+		if (d != null) {
+			d.shutdown();
+		}
+	}
+	
+	/*
+	 * Analyzes each source folder of the batch with its own model and parser, several at a time if
+	 * ccjava.batchConcurrency allows it. A failed analysis is recorded in the batch report and the batch goes on,
+	 * even if it failed with an error such as a StackOverflowError or an OutOfMemoryError.
+	 * The report follows the order of the batch, whatever the order the analyses finish in.
+	 */
+	private void runBatch(Path batch) throws IOException, InterruptedException {
+		List<String> sourceDirs = getBatchSourceDirs(batch);
+		Path batchDir = Files.isDirectory(batch) ? batch : batch.toAbsolutePath().getParent();
+		
+		AnalysisScheduler scheduler = new AnalysisScheduler(Integer.getInteger(BATCH_CONCURRENCY_PROPERTY, 1), 
+				getHeapBudget());
+		List<Future<BatchResult>> results = new ArrayList<Future<BatchResult>>(sourceDirs.size());
+		try {
+			for (String sourceDir : sourceDirs) {
+				results.add(submitBatchAnalysis(scheduler, sourceDir));
+			}
+		} finally {
+			scheduler.shutdown();
+		}
+		
+		int failed = 0;
+		try (CSVWriter report = new CSVWriter(batchDir.resolve(BATCH_REPORT_FILENAME))) {
+			report.writeHeader("sourceDir,status,milliseconds,error");
+			for (int i = 0; i < sourceDirs.size(); ++i) {
+				BatchResult result = getBatchResult(results.get(i));
+				if (result.error != null) {
+					++failed;
+				}
+				
+				report.write(sourceDirs.get(i))
+						.write(result.error == null ? "ok" : "failed")
+						.write(Long.toString(result.millis))
+						.write(result.error == null ? "" : result.error)
+						.endRow();
+				report.flush(); // keeps the results of the finished analyses if the process dies
+			}
+		}
+		
+		Log.info(LogCategory.BATCH, "\n***Analyzed %d source folders, %d failed", sourceDirs.size(), failed);
+	}
+	
+	private Future<BatchResult> submitBatchAnalysis(AnalysisScheduler scheduler, final String sourceDir) {
+		final Analysis analysis = createAnalysis(sourceDir);
+		return scheduler.submit(analysis, new Callable<BatchResult>() {
+			@Override
+			public BatchResult call() {
+				Log.info(LogCategory.BATCH, "\n***Analyzing %s", sourceDir);
+				
+				BatchResult result = new BatchResult();
+				long start = System.nanoTime();
+				try {
+					analysis.run();
+				} catch (Throwable t) { // e.g. a pathological changeset overflowing the stack, the batch goes on
+					result.error = t.toString();
+					Log.error(LogCategory.BATCH, "analysis failed: %s: %s", sourceDir, t);
+				}
+				result.millis = (System.nanoTime() - start) / 1000000;
+				return result;
+			}
+		});
+	}
+	
+	/*
+	 * A task that failed outside the analysis, e.g. while waiting to be admitted, is reported as a failed analysis.
+	 */
+	private BatchResult getBatchResult(Future<BatchResult> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			BatchResult result = new BatchResult();
+			result.error = e.getCause().toString();
+			return result;
+		}
+	}
+	
+	/*
+	 * A batch is either a folder whose subfolders are the source folders, or a manifest file listing one source
+	 * folder per line. Relative paths in a manifest are relative to the manifest's folder; empty lines and lines
+	 * starting with # are ignored.
+	 */
+	private List<String> getBatchSourceDirs(Path batch) throws IOException {
+		List<String> sourceDirs = new ArrayList<String>();
+		
+		if (Files.isDirectory(batch)) {
+			File[] files = batch.toFile().listFiles();
+			if (files == null) {
+				throw new IOException("couldn't list batch folder: " + batch);
+			}
+			for (File f : files) {
+				if (f.isDirectory()) {
+					sourceDirs.add(f.getPath());
+				}
+			}
+			Collections.sort(sourceDirs);
+		} else {
+			Path manifestDir = batch.toAbsolutePath().getParent();
+			for (String line : Files.readAllLines(batch, Charset.defaultCharset())) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					sourceDirs.add(manifestDir.resolve(line).toString());
+				}
+			}
+		}
+		
+		return sourceDirs;
+	}
+	
+	private long getHeapBudget() {
+		String heapBudget = System.getProperty(HEAP_BUDGET_PROPERTY);
+		return heapBudget == null
+				? AnalysisScheduler.getDefaultHeapBudget()
+				: Long.parseLong(heapBudget) * 1024 * 1024;
+	}
+	
+	private Analysis createAnalysis(String sourceDir) {
+		Analysis analysis = new Analysis(sourceDir);
+		analysis.setOptionsFromSystemProperties();
+		if (this.headlessOnly) {
+			analysis.setHeadless(true);
+		}
+		return analysis;
+	}
+}
@@ -0,0 +1,11 @@
+package ccjava;
+
+/**
+ * Runs ccjava without Eclipse, from a plain classpath: java -cp ... ccjava.Main <arguments>, with the same arguments
+ * and options as the Eclipse application. There is no workspace, so the analyses are always headless.
+ */
+public class Main {
+	public static void main(String[] args) throws Exception {
+		new Launcher(true).run(args);
+	}
+}
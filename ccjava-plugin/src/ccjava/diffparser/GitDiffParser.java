@@ -12,7 +12,8 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 
-import ccjava.DEFINES;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
 
 /**
  * Parses diff files generated by git-diff. Those diff files follow the unified diff format. 
@@ -32,9 +33,7 @@ public class GitDiffParser {
 	public List<UnifiedDiffRegion> parse() throws IOException {
 		List<UnifiedDiffRegion> diffs = new ArrayList<UnifiedDiffRegion>();
 		
-		if (DEFINES.LOG_DIFFS) {
-			System.out.println("\n*** Extracting diffs");
-		}
+		Log.info(LogCategory.DIFFS, "\n*** Extracting diffs");
 		
 		File root = sourceDir.toFile();
 		for (File f : FileUtils.listFiles(root, new SuffixFileFilter(JAVA_PATCH_FILE_SUFFIX), TrueFileFilter.INSTANCE)) {
@@ -50,9 +49,7 @@ public class GitDiffParser {
 		Path filePath = Paths.get(filePathStr);
 		Path relativeFilePath = getRelativePath(filePath);
 		
-		if (DEFINES.LOG_DIFFS) {
-			System.out.println("parsing patch file: " + relativeFilePath);
-		}
+		Log.debug(LogCategory.DIFFS, "parsing patch file: %s", relativeFilePath);
 
 		List<UnifiedDiffRegion> diffs = new ArrayList<UnifiedDiffRegion>();
 		List<String> patchLines = readLines(patchFile, DEFAULT_ENCODING);
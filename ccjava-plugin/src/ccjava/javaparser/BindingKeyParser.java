@@ -1,28 +1,77 @@
 package ccjava.javaparser;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Normalizes ECJ binding keys, removing generics information. Normalized keys are cached by raw key, since the
+ * same binding is found many times in a changeset, and equal normalized keys are returned as the same instance.
+ * Instances are thread-safe.
+ */
 public class BindingKeyParser {
+	private static final int DEFAULT_CACHE_SIZE = 1 << 16;
+	private static final BindingKeyParser SHARED_INSTANCE = new BindingKeyParser(DEFAULT_CACHE_SIZE);
+	
+	private int cacheSize;
+	// Maps raw keys to canonical normalized keys, and canonical normalized keys to themselves.
+	private ConcurrentMap<String, String> cache;
+	
 	public static String parse(String ecjBindingKey) {
-		String key = ecjBindingKey;
-		key = removeGenericsInformation(key);
-		return key;
+		return SHARED_INSTANCE.normalize(ecjBindingKey);
+	}
+	
+	/**
+	 * When the cache has more than cacheSize keys, it is cleared.
+	 */
+	public BindingKeyParser(int cacheSize) {
+		Validate.isTrue(cacheSize > 0);
+		
+		this.cacheSize = cacheSize;
+		this.cache = new ConcurrentHashMap<String, String>();
+	}
+	
+	public String normalize(String ecjBindingKey) {
+		String key = this.cache.get(ecjBindingKey);
+		if (key != null) {
+			return key;
+		}
+		
+		if (this.cache.size() >= this.cacheSize) {
+			this.cache.clear();
+		}
+		
+		key = removeGenericsInformation(ecjBindingKey);
+		String canonicalKey = this.cache.putIfAbsent(key, key);
+		if (canonicalKey == null) {
+			canonicalKey = key;
+		}
+		this.cache.put(ecjBindingKey, canonicalKey);
+		return canonicalKey;
 	}
 
 	// Assumes key has balanced brackets.
 	private static String removeGenericsInformation(String key) {
-		StringBuilder parsedKey = new StringBuilder();
+		if (key.indexOf('<') < 0 && key.indexOf('>') < 0) {
+			return key;
+		}
 		
-		// For unknown reasons, ECJ tends to replace $ with dot when there are parameter brackets preceding it.
-		key = key.replace(">.", ">$");
+		StringBuilder parsedKey = new StringBuilder(key.length());
 		
 		int brackets = 0;
-		for (Character c : key.toCharArray()) {
+		char previous = 0;
+		for (int i = 0; i < key.length(); ++i) {
+			char c = key.charAt(i);
 			if (c == '<') {
 				++brackets; 
 			} else if (c == '>') {
 				--brackets;
 			} else if (brackets == 0) {
-				parsedKey.append(c);
+				// For unknown reasons, ECJ tends to replace $ with dot when there are parameter brackets preceding it.
+				parsedKey.append(c == '.' && previous == '>' ? '$' : c);
 			}
+			previous = c;
 		}
 		
 		return parsedKey.toString();
@@ -0,0 +1,25 @@
+package ccjava.javaparser;
+
+import org.apache.commons.lang3.Validate;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import ccjava.model.AnalysisBudget;
+
+/**
+ * Progress monitor that is canceled once the budget is exceeded. JDT checks it during long operations, which then
+ * end with an OperationCanceledException.
+ */
+class BudgetProgressMonitor extends NullProgressMonitor {
+	private AnalysisBudget budget;
+	
+	public BudgetProgressMonitor(AnalysisBudget budget) {
+		Validate.notNull(budget);
+		
+		this.budget = budget;
+	}
+	
+	@Override
+	public boolean isCanceled() {
+		return super.isCanceled() || this.budget.isExceeded();
+	}
+}
@@ -18,19 +18,24 @@ import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
-import ccjava.DEFINES;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+import ccjava.model.BindingKeyTable;
 import ccjava.model.CharacterInterval;
 import ccjava.model.Definition;
 import ccjava.model.SourceFile;
 
 public class DefinitionVisitor extends ASTVisitor {
 	private SourceFile sourceFile;
+	private BindingKeyTable bindingKeyTable;
 	private List<Definition> definitions;
 	
-	public DefinitionVisitor(SourceFile sourceFile) {
+	public DefinitionVisitor(SourceFile sourceFile, BindingKeyTable bindingKeyTable) {
 		Validate.notNull(sourceFile);
+		Validate.notNull(bindingKeyTable);
 		
 		this.sourceFile = sourceFile;
+		this.bindingKeyTable = bindingKeyTable;
 		this.definitions = new ArrayList<Definition>();
 	}
 	
@@ -44,12 +49,12 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			definitions.add(def);
 			log("annotation definition", def);
 		} else {
-			log("skipped annotation definition (no binding): " + name);
+			logSkipped("annotation definition", name);
 		}
 		
 		return true;
@@ -61,12 +66,12 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			definitions.add(def);
 			log("annotation member definition", def);
 		} else {
-			log("skipped annotation member definition (no binding): " + name);
+			logSkipped("annotation member definition", name);
 		}
 		
 		return true;
@@ -78,12 +83,12 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveVariable() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveVariable());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveVariable());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			definitions.add(def);
 			log("enum constant definition", def);
 		} else {
-			log("skipped enum constant definition (no binding): " + name);
+			logSkipped("enum constant definition", name);
 		}
 		
 		return true;
@@ -95,13 +100,13 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			def.setTypeDefinition(true);
 			definitions.add(def);
 			log("enum definition", def);
 		} else {
-			log("skipped enum definition (no binding): " + name);
+			logSkipped("enum definition", name);
 		}
 		
 		return true;
@@ -115,12 +120,12 @@ public class DefinitionVisitor extends ASTVisitor {
 			CharacterInterval position = getPositionFromNode(node);
 			
 			if (frag.resolveBinding() == null) {
-				log("skipped field definition (no binding): " + name);
+				logSkipped("field definition", name);
 				continue;
 			}
 			
-			String bindingKey = getBindingKey(frag.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(frag.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			definitions.add(def);
 			log("field definition", def);
 		}
@@ -133,13 +138,13 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			def.setMethodDefinition(true);
 			definitions.add(def);
 			log("method definition", def);
 		} else {
-			log("skipped method definition (no binding): " + name);
+			logSkipped("method definition", name);
 		}
 		
 		return true;
@@ -151,12 +156,12 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			definitions.add(def);
 			log("singlevariable definition", def);
 		} else {
-			log("skipped singlevariable definition (no binding): " + name);
+			logSkipped("singlevariable definition", name);
 		}
 		
 		return true;
@@ -168,13 +173,13 @@ public class DefinitionVisitor extends ASTVisitor {
 
 		if (node.resolveBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			def.setTypeDefinition(true);
 			definitions.add(def);
 			log("type definition", def);
 		} else {
-			log("skipped type definition (no binding): " + name);
+			logSkipped("type definition", name);
 		}
 		
 		return true;
@@ -186,12 +191,12 @@ public class DefinitionVisitor extends ASTVisitor {
 //
 //		if (node.resolveBinding() != null) {
 //			CharacterInterval position = getPositionFromNode(node);
-//			String bindingKey = getBindingKey(node.resolveBinding());
-//			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+//			int bindingKeyId = getBindingKeyId(node.resolveBinding());
+//			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 //			definitions.add(def);
 //			log("type parameter definition", def);
 //		} else {
-//			log("skipped type parameter (no binding): " + name);
+//			logSkipped("type parameter", name);
 //		}
 //		
 //		return true;
@@ -207,35 +212,31 @@ public class DefinitionVisitor extends ASTVisitor {
 					: getPositionFromNode(node);
 			
 			if (frag.resolveBinding() == null) {
-				log("skipped variable definition (no binding): " + name);
+				logSkipped("variable definition", name);
 				continue;
 			}
 			
-			String bindingKey = getBindingKey(frag.resolveBinding());
-			Definition def = new Definition(name, this.sourceFile, position, bindingKey);
+			int bindingKeyId = getBindingKeyId(frag.resolveBinding());
+			Definition def = new Definition(name, this.sourceFile, position, this.bindingKeyTable, bindingKeyId);
 			definitions.add(def);
 			log("variable definition", def);
 		}
 		return true;
 	}
 	
-	private void log(String msg) {
-		if (DEFINES.LOG_DEFINITION_VISITOR) {
-			System.out.println(msg);
-		}
+	private void logSkipped(String msg, String name) {
+		Log.debug(LogCategory.DEFINITION_VISITOR, "skipped %s (no binding): %s", msg, name);
 	}
 	
 	private void log(String msg, Definition def) {
-		if (DEFINES.LOG_DEFINITION_VISITOR) {
-			System.out.printf("%s %s%n", msg, def.toString());
-		}
+		Log.trace(LogCategory.DEFINITION_VISITOR, "%s %s", msg, def);
 	}
 
 	private CharacterInterval getPositionFromNode(ASTNode node) {
 		return CharacterInterval.fromPositionAndLength(node.getStartPosition(), node.getLength());
 	}
 	
-	private String getBindingKey(IBinding binding) {
-		return BindingKeyParser.parse(binding.getKey());
+	private int getBindingKeyId(IBinding binding) {
+		return this.bindingKeyTable.getId(BindingKeyParser.parse(binding.getKey()));
 	}
 }
@@ -0,0 +1,226 @@
+package ccjava.javaparser;
+
+import org.apache.commons.lang3.Validate;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
+import org.eclipse.jdt.core.dom.ArrayType;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.IntersectionType;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NameQualifiedType;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.UnionType;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WildcardType;
+
+import ccjava.model.AnalysisBudget;
+import ccjava.model.CharacterIntervalSet;
+
+/**
+ * Runs the definition, use and missing type visitors in a single traversal of the AST. Each node type is handled
+ * by only one of them, so every node is just forwarded. The missing type visitor is optional.
+ * 
+ * Uses can be limited to some spans of the file. Subtrees that don't intersect any of them are still visited for
+ * definitions and missing types, but none of their nodes is checked for uses.
+ * 
+ * With a budget, the visited nodes are added to it every BUDGET_CHECK_INTERVAL nodes, which also checks its
+ * limits, and once more at the end of the compilation unit.
+ */
+public class ExtractionVisitor extends ASTVisitor {
+	private static final int BUDGET_CHECK_INTERVAL = 4096;
+	
+	private DefinitionVisitor definitionVisitor;
+	private UseVisitor useVisitor;
+	private MissingTypeVisitor missingTypeVisitor;
+	private CharacterIntervalSet useSpans;
+	private ASTNode skippedUsesRoot;
+	private AnalysisBudget budget;
+	private int uncountedNodes;
+	
+	public ExtractionVisitor(DefinitionVisitor definitionVisitor, UseVisitor useVisitor, 
+			MissingTypeVisitor missingTypeVisitor) {
+		Validate.notNull(definitionVisitor);
+		Validate.notNull(useVisitor);
+		
+		this.definitionVisitor = definitionVisitor;
+		this.useVisitor = useVisitor;
+		this.missingTypeVisitor = missingTypeVisitor;
+	}
+	
+	/**
+	 * Only nodes intersecting these spans are checked for uses. If null (default), uses are extracted from the 
+	 * whole AST.
+	 */
+	public void setUseSpans(CharacterIntervalSet useSpans) {
+		this.useSpans = useSpans;
+	}
+	
+	/**
+	 * If null (default), nodes are not counted.
+	 */
+	public void setBudget(AnalysisBudget budget) {
+		this.budget = budget;
+	}
+	
+	@Override
+	public boolean preVisit2(ASTNode node) {
+		if (this.budget != null && ++this.uncountedNodes == BUDGET_CHECK_INTERVAL) {
+			this.uncountedNodes = 0;
+			this.budget.addAstNodes(BUDGET_CHECK_INTERVAL);
+		}
+		
+		if (this.useSpans != null && this.skippedUsesRoot == null) {
+			int lastCharPos = node.getStartPosition() + Math.max(node.getLength(), 1) - 1;
+			if (!this.useSpans.intersects(node.getStartPosition(), lastCharPos)) {
+				this.skippedUsesRoot = node;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public void postVisit(ASTNode node) {
+		if (node == this.skippedUsesRoot) {
+			this.skippedUsesRoot = null;
+		}
+	}
+	
+	@Override
+	public void endVisit(CompilationUnit node) {
+		if (this.budget != null && this.uncountedNodes > 0) {
+			int count = this.uncountedNodes;
+			this.uncountedNodes = 0;
+			this.budget.addAstNodes(count);
+		}
+	}
+	
+	// Definitions
+	
+	@Override
+	public boolean visit(AnnotationTypeDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(AnnotationTypeMemberDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(EnumConstantDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(EnumDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(FieldDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(MethodDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(SingleVariableDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(TypeDeclaration node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(VariableDeclarationStatement node) {
+		return this.definitionVisitor.visit(node);
+	}
+	
+	// Uses
+	
+	@Override
+	public boolean visit(ClassInstanceCreation node) {
+		return this.skippedUsesRoot != null || this.useVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(SimpleName node) {
+		return this.skippedUsesRoot != null || this.useVisitor.visit(node);
+	}
+	
+	// Missing types
+	
+	@Override
+	public boolean visit(PackageDeclaration node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(ImportDeclaration node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(ArrayType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(IntersectionType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(NameQualifiedType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(ParameterizedType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(PrimitiveType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(QualifiedType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(SimpleType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(UnionType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+	
+	@Override
+	public boolean visit(WildcardType node) {
+		return this.missingTypeVisitor == null || this.missingTypeVisitor.visit(node);
+	}
+}
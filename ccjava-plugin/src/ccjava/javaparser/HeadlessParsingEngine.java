@@ -0,0 +1,205 @@
+package ccjava.javaparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+
+/**
+ * Parsing engine that doesn't use the Eclipse workspace. ECJ reads the files of the changeset directly and
+ * the other types of the changeset are looked up in the source folders of the changeset. Types are resolved
+ * against the JRE running the application.
+ *
+ * Mocks for missing types are written to a temporary source folder, which is deleted by dispose().
+ */
+public class HeadlessParsingEngine implements ParsingEngine {
+	private static final String JAVA_PROJECT_VERSION = JavaCore.VERSION_1_8;
+	private static final String MOCKS_FOLDER_PREFIX = "ccjava-mocks";
+	// The encoding used by JavaFile to read the files
+	private static final String SOURCE_ENCODING = Charset.defaultCharset().name();
+	
+	/*
+	 * The source code itself isn't kept, since the compilation units are parsed from their files.
+	 */
+	private static class CompilationUnitSource {
+		public String absolutePath;
+		public int length;
+		
+		public CompilationUnitSource(String absolutePath, int length) {
+			this.absolutePath = absolutePath;
+			this.length = length;
+		}
+	}
+
+	private String sourceDir;
+	private Map<String, CompilationUnitSource> compilationUnits;
+	private Set<String> sourceFolders;
+	private Set<String> mockTypesPaths;
+	private File mocksFolder;
+	private Map<String, String> compilerOptions;
+	private IProgressMonitor monitor;
+	
+	public HeadlessParsingEngine(String sourceDir) {
+		Validate.notBlank(sourceDir);
+		
+		this.sourceDir = sourceDir;
+		this.compilationUnits = new LinkedHashMap<String, CompilationUnitSource>();
+		this.sourceFolders = new LinkedHashSet<String>();
+		this.mockTypesPaths = new HashSet<String>();
+	}
+
+	@Override
+	public void load() throws IOException {
+		List<JavaFile> javaFiles = JavaFile.list(this.sourceDir);
+		Map<String, JavaFile> javaFilesByPath = new LinkedHashMap<String, JavaFile>();
+		for (JavaFile f : javaFiles) {
+			javaFilesByPath.put(f.getPath(), f);
+		}
+		
+		List<String> paths = new ArrayList<String>(javaFilesByPath.keySet());
+		Collections.sort(paths);
+		
+		for (String path : paths) {
+			JavaFile f = javaFilesByPath.get(path);
+			this.compilationUnits.put(path, new CompilationUnitSource(f.getFile().getAbsolutePath(),
+					f.getSource().length()));
+			this.sourceFolders.add(getSourceFolder(f));
+		}
+		
+		this.mocksFolder = Files.createTempDirectory(MOCKS_FOLDER_PREFIX).toFile();
+		this.sourceFolders.add(this.mocksFolder.getAbsolutePath());
+		
+		this.compilerOptions = createCompilerOptions();
+	}
+
+	@Override
+	public List<String> getCompilationUnitPaths() {
+		return new ArrayList<String>(this.compilationUnits.keySet());
+	}
+
+	@Override
+	public int getCompilationUnitLength(String path) {
+		return getCompilationUnitSource(path).length;
+	}
+
+	/**
+	 * Parses all the given compilation units with a single ASTParser, so ECJ builds the lookup environment once and
+	 * shares it between them. The source code is read from the files, so mocks are written before being added.
+	 */
+	@Override
+	public List<CompilationUnit> parse(List<String> paths) {
+		String[] sourcepathEntries = this.sourceFolders.toArray(new String[this.sourceFolders.size()]);
+		String[] absolutePaths = new String[paths.size()];
+		String[] encodings = new String[paths.size()];
+		for (int i = 0; i < paths.size(); ++i) {
+			absolutePaths[i] = getCompilationUnitSource(paths.get(i)).absolutePath;
+			encodings[i] = SOURCE_ENCODING;
+		}
+		
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setCompilerOptions(this.compilerOptions);
+		parser.setEnvironment(new String[0], sourcepathEntries, null, true);
+		parser.setResolveBindings(true);
+		parser.setStatementsRecovery(true);
+		
+		final Map<String, CompilationUnit> parsedCUnitsByAbsolutePath = new HashMap<String, CompilationUnit>();
+		parser.createASTs(absolutePaths, encodings, new String[0], new FileASTRequestor() {
+			@Override
+			public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+				parsedCUnitsByAbsolutePath.put(sourceFilePath, ast);
+			}
+		}, this.monitor);
+		
+		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>(paths.size());
+		for (String absolutePath : absolutePaths) {
+			CompilationUnit cu = parsedCUnitsByAbsolutePath.get(absolutePath);
+			if (cu == null) {
+				throw new OperationCanceledException(); // ECJ stops reporting ASTs once the monitor is canceled
+			}
+			parsedCUnits.add(cu);
+		}
+		
+		return parsedCUnits;
+	}
+
+	@Override
+	public void reload(List<String> paths) {
+		for (String path : paths) {
+			CompilationUnitSource cuSource = getCompilationUnitSource(path);
+			cuSource.length = JavaFile.readFileToString(new File(cuSource.absolutePath)).length();
+		}
+	}
+
+	@Override
+	public String addMockCompilationUnit(String packageName, String typeName, String code) throws IOException {
+		File pkgFolder = new File(this.mocksFolder, packageName.replace(".", File.separator));
+		File mockFile = new File(pkgFolder, typeName + ".java");
+		FileUtils.writeStringToFile(mockFile, code);
+		
+		String path = mockFile.getAbsolutePath();
+		this.compilationUnits.put(path, new CompilationUnitSource(path, code.length()));
+		this.mockTypesPaths.add(path);
+		return path;
+	}
+
+	@Override
+	public boolean isMockCompilationUnit(String path) {
+		return this.mockTypesPaths.contains(path);
+	}
+
+	@Override
+	public void setProgressMonitor(IProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	@Override
+	public void dispose() throws IOException {
+		if (this.mocksFolder != null) {
+			FileUtils.deleteDirectory(this.mocksFolder);
+			this.mocksFolder = null;
+		}
+		this.compilationUnits.clear();
+	}
+
+	private CompilationUnitSource getCompilationUnitSource(String path) {
+		CompilationUnitSource cuSource = this.compilationUnits.get(path);
+		Validate.notNull(cuSource, "unknown compilation unit: %s", path);
+		return cuSource;
+	}
+
+	private String getSourceFolder(JavaFile f) {
+		if (f.isPackageless()) {
+			return f.getFile().getAbsoluteFile().getParent();
+		}
+		
+		return new File(this.sourceDir, f.getSourceFolderPath()).getAbsolutePath();
+	}
+
+	private Map<String, String> createCompilerOptions() {
+		Map<String, String> options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JAVA_PROJECT_VERSION, options);
+		options.put(JavaCore.COMPILER_PB_ASSERT_IDENTIFIER, JavaCore.ERROR);
+		options.put(JavaCore.COMPILER_PB_ENUM_IDENTIFIER, JavaCore.ERROR);
+		return options;
+	}
+}
@@ -0,0 +1,146 @@
+package ccjava.javaparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.lang3.Validate;
+
+import ccjava.DEFINES;
+import ccjava.javaparser.exception.InvalidPackageNameException;
+
+/**
+ * A .java file of the changeset, along with the package it declares and the source folder it belongs to.
+ */
+class JavaFile {
+	private static final Pattern PACKAGE_NAME_PATTERN = Pattern.compile("package\\s+([a-zA_Z_][\\.\\w]*);");
+	
+	private File file;
+	private String source;
+	private String packageName;
+	private String sourceFolderPath;
+	
+	/**
+	 * Lists the .java files inside sourceDir. Files with invalid package names are skipped, unless
+	 * DEFINES.FAIL_ON_ERROR is set.
+	 */
+	public static List<JavaFile> list(String sourceDir) throws IOException {
+		List<JavaFile> javaFiles = new ArrayList<JavaFile>();
+		
+		File root = new File(sourceDir);
+		for (File f : FileUtils.listFiles(root, new SuffixFileFilter(".java"), TrueFileFilter.INSTANCE)) {
+			String source = readFileToString(f);
+			String pkgName = "";
+			try {
+				pkgName = getPackageName(source);
+			} catch (InvalidPackageNameException e) {
+				if (DEFINES.FAIL_ON_ERROR) {
+					throw e;
+				}
+				continue;
+			}
+			
+			javaFiles.add(new JavaFile(f, source, pkgName, getSourceFolderPath(sourceDir, f.getAbsolutePath(), pkgName)));
+		}
+		
+		return javaFiles;
+	}
+
+	private JavaFile(File file, String source, String packageName, String sourceFolderPath) {
+		Validate.notNull(file);
+		Validate.notNull(source);
+		Validate.notNull(packageName);
+		
+		this.file = file;
+		this.source = source;
+		this.packageName = packageName;
+		this.sourceFolderPath = sourceFolderPath;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public String getSource() {
+		return this.source;
+	}
+
+	public String getPackageName() {
+		return this.packageName;
+	}
+
+	public boolean isPackageless() {
+		return this.packageName.trim().isEmpty();
+	}
+
+	/**
+	 * Path of the folder that contains the package folders of this file, relative to the changeset source
+	 * directory. Returns null if the file has no package declaration.
+	 */
+	public String getSourceFolderPath() {
+		return this.sourceFolderPath;
+	}
+
+	/**
+	 * Path that identifies this file inside the changeset. For files with a package, this is the path relative to
+	 * the changeset source directory. For files without one, it is just the file name.
+	 */
+	public String getPath() {
+		if (isPackageless()) {
+			return this.file.getName();
+		}
+		
+		String pkgPath = this.packageName.replace(".", "/");
+		return java.nio.file.Paths.get(this.sourceFolderPath, pkgPath, this.file.getName()).toString();
+	}
+
+	private static String getSourceFolderPath(String sourceDir, String absolutePath, String pkgName) throws IOException {
+		if (pkgName.trim().isEmpty()) {
+			return null;
+		}
+		
+		String pkgPath = pkgName.replace(".", "/");
+		String fullSrcFolderPath = absolutePath.split(pkgPath)[0];
+		return getRelativePath(sourceDir, fullSrcFolderPath);
+	}
+
+	private static String getRelativePath(String path1, String path2) throws IOException {
+		java.nio.file.Path nioPath1 = java.nio.file.Paths.get(path1).normalize().toRealPath();
+		java.nio.file.Path nioPath2 = java.nio.file.Paths.get(path2).normalize().toRealPath();
+		return nioPath1.relativize(nioPath2).toString();
+	}
+
+	private static String getPackageName(String sourceCode) {
+		Matcher m = PACKAGE_NAME_PATTERN.matcher(sourceCode);
+		boolean found = m.find();
+		// "Capturing groups are indexed from left to right, starting at one"
+		// Thus, group 1 is the package name.
+		String pkgName = found ? m.group(1) : "";
+		
+		if (!validPackageName(pkgName)) {
+			throw new InvalidPackageNameException(pkgName);
+		}
+		
+		return pkgName;
+	}
+
+	private static boolean validPackageName(String packageName) {
+		return packageName.matches("[0-9A-Za-z\\.]*");
+	}
+
+	static String readFileToString(File f) {
+		String fileData = null;
+		try {
+			fileData = FileUtils.readFileToString(f);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return fileData;
+	}
+}
@@ -8,22 +8,58 @@ import ccjava.model.CharacterInterval;
 import ccjava.model.LineToCharacterIntervalConverter;
 
 public class JavaLineToCharacterIntervalConverter implements LineToCharacterIntervalConverter {
-	private CompilationUnit parsedCode;
+	// Only the line start positions are kept, so the compilation unit doesn't need to be retained.
+	private int[] lineStartPositions;
+	private int length;
 	
 	public JavaLineToCharacterIntervalConverter(CompilationUnit parsedCode) {
 		Validate.notNull(parsedCode);
 		
-		this.parsedCode = parsedCode;
+		int numLines = 0;
+		while (parsedCode.getPosition(numLines + 1, 0) >= 0) {
+			++numLines;
+		}
+		
+		this.lineStartPositions = new int[numLines];
+		for (int i = 0; i < numLines; ++i) {
+			this.lineStartPositions[i] = parsedCode.getPosition(i + 1, 0);
+		}
+		this.length = parsedCode.getLength();
 	}
 
 	@Override
 	public CharacterInterval getCharacterInterval(LineInterval lines) {
-		int firstCharPos = this.parsedCode.getPosition(lines.getFirstLineNumber(), 0);
-		int lastCharPos = this.parsedCode.getPosition(lines.getLastLineNumber() + 1, 0) - 1;
+		int firstCharPos = getPosition(lines.getFirstLineNumber());
+		int lastCharPos = getPosition(lines.getLastLineNumber() + 1) - 1;
 		if (lastCharPos < 0) { // happens if lastLineNumber() + 1 doesnt exist
-			lastCharPos = this.parsedCode.getLength() - 1;
+			lastCharPos = this.length - 1;
 		}
 		
 		return CharacterInterval.fromPositions(firstCharPos, lastCharPos);
 	}
+	
+	@Override
+	public int getLineNumber(int characterPosition) {
+		Validate.isTrue(characterPosition >= 0 && characterPosition < this.length);
+		
+		// Finds the last line starting at or before the character position.
+		int low = 0;
+		int high = this.lineStartPositions.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (this.lineStartPositions[mid] <= characterPosition) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low + 1;
+	}
+	
+	private int getPosition(int lineNumber) {
+		if (lineNumber < 1 || lineNumber > this.lineStartPositions.length) {
+			return -1;
+		}
+		return this.lineStartPositions[lineNumber - 1];
+	}
 }
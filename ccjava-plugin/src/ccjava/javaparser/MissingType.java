@@ -56,6 +56,17 @@ public class MissingType {
 		return parentType != null;
 	}
 	
+	/**
+	 * Returns the outermost type enclosing this one, which is the type that owns the mock compilation unit.
+	 */
+	public MissingType getRootType() {
+		MissingType root = this;
+		while (root.parentType != null) {
+			root = root.parentType;
+		}
+		return root;
+	}
+	
 	public void addChild(MissingType nestedType) {
 		Validate.notNull(nestedType);
 		
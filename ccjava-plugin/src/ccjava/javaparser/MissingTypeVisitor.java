@@ -1,7 +1,9 @@
 package ccjava.javaparser;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -20,10 +22,12 @@ import org.eclipse.jdt.core.dom.Type;
 import org.eclipse.jdt.core.dom.UnionType;
 import org.eclipse.jdt.core.dom.WildcardType;
 
-import ccjava.DEFINES;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
 
 public class MissingTypeVisitor extends ASTVisitor {
 	private Map<String, MissingType> missingTypes;
+	private Set<MissingType> referencedMissingTypes;
 	private String cUnitPackagePath;
 	private Map<String, String> typeNameToPackagePath;
 	
@@ -31,16 +35,25 @@ public class MissingTypeVisitor extends ASTVisitor {
 		Validate.notNull(missingTypes);
 		
 		this.missingTypes = missingTypes;
+		this.referencedMissingTypes = new HashSet<MissingType>();
 		this.cUnitPackagePath = "";
 		this.typeNameToPackagePath = new HashMap<String, String>();
 	}
 	
+	/**
+	 * Missing types referenced by the visited compilation unit. Unlike the map given to the constructor, which may
+	 * be shared by many visitors, this only contains the types found by this visitor.
+	 */
+	public Set<MissingType> getReferencedMissingTypes() {
+		return this.referencedMissingTypes;
+	}
+	
 	@Override
 	public boolean visit(PackageDeclaration node) {
 		this.cUnitPackagePath = node.getName().getFullyQualifiedName();
 		return true;
 	}
-
+	
 	@Override
 	public boolean visit(ImportDeclaration node) {
 		if (!node.isOnDemand() && node.getName().isQualifiedName()) {
@@ -247,7 +260,9 @@ public class MissingTypeVisitor extends ASTVisitor {
 		String mtId = MissingType.getId(packagePath, name);
 		
 		if (this.missingTypes.containsKey(mtId)) {
-			return this.missingTypes.get(mtId);
+			MissingType mt = this.missingTypes.get(mtId);
+			this.referencedMissingTypes.add(mt);
+			return mt;
 		}
 		
 		MissingType mt = new MissingType(packagePath, name);
@@ -256,6 +271,7 @@ public class MissingTypeVisitor extends ASTVisitor {
 			parentMT.addChild(mt);
 		}
 		this.missingTypes.put(mt.getId(), mt);
+		this.referencedMissingTypes.add(mt);
 		log("added missing type", mt);
 		return mt;
 	}
@@ -299,16 +315,8 @@ public class MissingTypeVisitor extends ASTVisitor {
 		return firstChar.equals(firstChar.toUpperCase());
 	}
 	
-	private void log(String msg) {
-		if (DEFINES.LOG_MISSING_TYPE_VISITOR) {
-			System.out.printf("%s%n", msg);
-		}
-	}
-
 	private void log(String msg, MissingType mt) {
-		if (DEFINES.LOG_MISSING_TYPE_VISITOR) {
-			System.out.printf("%s %s%n", msg, mt);
-		}
+		Log.trace(LogCategory.MISSING_TYPE_VISITOR, "%s %s", msg, mt);
 	}
 
 	private String getPackagePathForTypeName(String name) {
@@ -1,419 +1,553 @@
 package ccjava.javaparser;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
-import org.eclipse.core.resources.IFolder;
-import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IProjectDescription;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.ResourcesPlugin;
+import org.apache.commons.lang3.Validate;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
-import org.eclipse.jdt.core.IClasspathEntry;
-import org.eclipse.jdt.core.ICompilationUnit;
-import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaModelStatus;
-import org.eclipse.jdt.core.IJavaProject;
-import org.eclipse.jdt.core.IPackageFragment;
-import org.eclipse.jdt.core.IPackageFragmentRoot;
-import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jdt.core.dom.AST;
-import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.launching.JavaRuntime;
 
 import ccjava.DEFINES;
-import ccjava.javaparser.exception.InvalidPackageNameException;
+import ccjava.diffparser.LineInterval;
+import ccjava.diffparser.UnifiedDiffRegion;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+import ccjava.model.AnalysisBudget;
+import ccjava.model.BindingKeyIndex;
+import ccjava.model.BindingKeyTable;
 import ccjava.model.Changeset;
 import ccjava.model.CharacterInterval;
+import ccjava.model.CharacterIntervalSet;
 import ccjava.model.Comment;
 import ccjava.model.Definition;
+import ccjava.model.LineToCharacterIntervalConverter;
 import ccjava.model.SourceFile;
 import ccjava.model.Use;
 
 public class Parser {
-	private static final String JAVA_PROJECT_VERSION = JavaCore.VERSION_1_8;
-	private static final String DEFAULT_SOURCE_FOLDER_NAME = "src";
-	private static final String DEFAULT_PACKAGELESS_SOURCE_FOLDER_NAME = "srcmisc";
 	 // Roughly the maximum class hierarchy level we are willing to parse. @see createMocksForMissingTypes()
 	private static final int MAXIMUM_CREATE_MISSING_MOCKS_ITERATIONS = 8;
-	private static final Pattern PACKAGE_NAME_PATTERN = Pattern.compile("package\\s+([a-zA_Z_][\\.\\w]*);");
 	private boolean ignoreUsesWithoutAssociatedDefinitions = true;
+	private boolean batchParsing = true;
+	private int parserThreads = 1;
+	private Map<String, List<LineInterval>> changedLines;
+	private AnalysisBudget budget = new AnalysisBudget();
 	
 	private String sourceDir;
-	private IProject project;
-	private IJavaProject javaProject;
-	private IPackageFragmentRoot lastSrcFolderPackageFragmentRoot;
+	private ParsingEngine engine;
 	
+	private BindingKeyTable bindingKeyTable;
 	private Map<String, SourceFile> sourceFiles;
 	private Set<Definition> definitions;
 	private Set<Use> uses;
-	
-	private Set<String> mockTypesPaths;
+	private Map<String, UseVisitor> useVisitors;
+	private Map<String, TypeHierarchy> typeHierarchies;
 
 
 	public Parser(String sourceDir) {
+		this(sourceDir, new WorkspaceParsingEngine(sourceDir));
+	}
+	
+	public Parser(String sourceDir, ParsingEngine engine) {
+		Validate.notNull(engine);
+		
 		this.sourceDir = sourceDir;
-		this.mockTypesPaths = new HashSet<String>();
+		this.engine = engine;
+		this.engine.setProgressMonitor(new BudgetProgressMonitor(this.budget));
 	}
 
 	public Changeset parse() throws CoreException, IOException {
-		createProject();
+		this.engine.load();
+		this.bindingKeyTable = new BindingKeyTable();
 		
 		createMocksForMissingTypes();
+		if (this.sourceFiles == null) {
+			// The last pass of the mock creation can't be reused because mocks changed after it.
+			extract(parseCompilationUnits(getNonMockCompilationUnitPaths()), null);
+		}
+		BindingKeyIndex bindingKeyIndex = new BindingKeyIndex(this.bindingKeyTable, this.definitions);
+		this.uses = resolveUses(bindingKeyIndex);
+		
+		return new Changeset(this.sourceFiles, bindingKeyIndex);
+	}
+	
+	/**
+	 * Updates the changeset after some of its files changed, e.g. when new commits are pushed to a pull request. 
+	 * Only the changed files and the files whose uses may resolve differently are parsed again: the files using their
+	 * definitions or their types, and the files using members of their supertypes that they may now override. The 
+	 * definitions, comments and recorded uses of the other files are kept from the previous parse, and their uses 
+	 * are resolved again.
+	 * 
+	 * The returned changeset is made of new objects and has no diff regions, just like the one returned by parse().
+	 * parse() must be called before. Files can't be added or removed, and mocks are not created for types that are
+	 * only missing in the new version of the changed files. Use a new Parser in these cases.
+	 */
+	public Changeset update(Collection<String> changedPaths) throws CoreException, IOException {
+		Validate.notNull(changedPaths);
+		Validate.validState(this.uses != null, "parse() must be called before update()");
+		for (String path : changedPaths) {
+			Validate.isTrue(this.sourceFiles.containsKey(path), "unknown source file: %s", path);
+		}
+		
+		List<String> allPaths = getNonMockCompilationUnitPaths();
+		this.engine.reload(filterPaths(allPaths, changedPaths));
+		
+		Map<String, SourceFile> previousSourceFiles = this.sourceFiles;
+		Map<String, TypeHierarchy> previousTypeHierarchies = new HashMap<String, TypeHierarchy>(this.typeHierarchies);
+		this.sourceFiles = new HashMap<String, SourceFile>();
 		
-		List<CompilationUnit> parsedCompilationUnits = parsePackageFragments();
-		this.sourceFiles = createSourceFiles(parsedCompilationUnits);
-		this.definitions = extractDefinitions(parsedCompilationUnits);
-		this.uses = extractUses(parsedCompilationUnits);
-		extractComments(parsedCompilationUnits);
+		Set<String> reparsedPaths = reparseChangedAndDependentFiles(allPaths, new HashSet<String>(changedPaths), 
+				previousSourceFiles, previousTypeHierarchies);
+		for (String path : allPaths) {
+			if (!reparsedPaths.contains(path)) {
+				this.sourceFiles.put(path, copySourceFile(previousSourceFiles.get(path)));
+			}
+		}
+		
+		this.definitions = new LinkedHashSet<Definition>();
+		for (String path : allPaths) {
+			this.definitions.addAll(this.sourceFiles.get(path).getDefinitions());
+		}
+		BindingKeyIndex bindingKeyIndex = new BindingKeyIndex(this.bindingKeyTable, this.definitions);
+		this.uses = resolveUses(bindingKeyIndex);
 		
-		return new Changeset(this.sourceFiles);
+		return new Changeset(this.sourceFiles, bindingKeyIndex);
+	}
+	
+	/**
+	 * Releases the resources held by the parsing engine, e.g. the workspace project or temporary files.
+	 */
+	public void dispose() throws CoreException, IOException {
+		this.engine.dispose();
 	}
 
 	public void setIgnoreUsesWithoutAssociatedDefinitions(
 			boolean ignoreUsesWithoutAssociatedDefinitions) {
 		this.ignoreUsesWithoutAssociatedDefinitions = ignoreUsesWithoutAssociatedDefinitions;
 	}
+	
+	/**
+	 * When enabled (default), all compilation units are parsed together by a single ASTParser, sharing one binding 
+	 * lookup environment. Otherwise, each compilation unit is parsed on its own.
+	 */
+	public void setBatchParsing(boolean batchParsing) {
+		this.batchParsing = batchParsing;
+	}
+	
+	/**
+	 * Number of threads used to parse the compilation units. With more than one thread, the compilation units are
+	 * split into size-balanced buckets which are parsed independently. The parsed compilation units are always
+	 * returned in the same order, regardless of the number of threads.
+	 */
+	public void setParserThreads(int parserThreads) {
+		Validate.isTrue(parserThreads >= 1);
+		
+		this.parserThreads = parserThreads;
+	}
+	
+	/**
+	 * The budget checked while parsing and extracting. Once it is exceeded, parse() and update() throw a 
+	 * BudgetExceededException. Unlimited by default.
+	 */
+	public void setBudget(AnalysisBudget budget) {
+		Validate.notNull(budget);
+		
+		this.budget = budget;
+		this.engine.setProgressMonitor(new BudgetProgressMonitor(budget));
+	}
+	
+	/**
+	 * Restricts use extraction to the changed lines. AST subtrees outside them are not checked for uses, and files 
+	 * without changed lines have no uses at all. Definitions are still extracted from every file. The relations 
+	 * between diff regions don't change, since they only consider the uses inside diff regions, but the changeset 
+	 * only contains the uses in changed lines. Must be called before parse(), or before update() for the files it 
+	 * parses again. If null (default), uses are extracted from every file.
+	 */
+	public void setChangedLines(List<UnifiedDiffRegion> uniDiffRegions) {
+		if (uniDiffRegions == null) {
+			this.changedLines = null;
+			return;
+		}
+		
+		this.changedLines = new HashMap<String, List<LineInterval>>();
+		for (UnifiedDiffRegion udr : uniDiffRegions) {
+			if (!this.changedLines.containsKey(udr.getPath())) {
+				this.changedLines.put(udr.getPath(), new ArrayList<LineInterval>());
+			}
+			this.changedLines.get(udr.getPath()).add(udr.getLines());
+		}
+	}
 
-	private Map<String, SourceFile> createSourceFiles(
-			Collection<CompilationUnit> parsedCompilationUnits) {
-		Map<String, SourceFile> sourceFilesMap = new HashMap<String, SourceFile>();
-		
-		for (CompilationUnit cu : parsedCompilationUnits) {
-			if (!isCompilationUnitMockClass(cu)){
-				String cuPath = getCompilationUnitPath(cu);
-				String filePath = new Path(sourceDir).append(cuPath).toOSString();
-				SourceFile sf = new SourceFile(cuPath, filePath, new JavaLineToCharacterIntervalConverter(cu));
-				sourceFilesMap.put(cuPath, sf);
+	/*
+	 * Extracts definitions, comments and the names used by the given compilation units in a single traversal of 
+	 * each AST. Uses are only resolved afterwards by resolveUses(), once all definitions are known. If missingTypes
+	 * is not null, missing types are extracted in the same traversal and the ones referenced by each compilation 
+	 * unit are returned.
+	 */
+	private Map<String, Set<MissingType>> extract(Map<String, CompilationUnit> parsedCompilationUnits, 
+			Map<String, MissingType> missingTypes) {
+		this.sourceFiles = new HashMap<String, SourceFile>();
+		this.definitions = new LinkedHashSet<Definition>();
+		this.useVisitors = new LinkedHashMap<String, UseVisitor>();
+		this.typeHierarchies = new HashMap<String, TypeHierarchy>();
+		Map<String, Set<MissingType>> referencedMissingTypes = new LinkedHashMap<String, Set<MissingType>>();
+		
+		for (Map.Entry<String, CompilationUnit> entry : parsedCompilationUnits.entrySet()) {
+			this.budget.check();
+			String cuPath = entry.getKey();
+			MissingTypeVisitor mtVisitor = missingTypes != null ? new MissingTypeVisitor(missingTypes) : null;
+			SourceFile sf = extractCompilationUnit(cuPath, entry.getValue(), mtVisitor);
+			
+			this.definitions.addAll(sf.getDefinitions());
+			if (mtVisitor != null && !mtVisitor.getReferencedMissingTypes().isEmpty()) {
+				referencedMissingTypes.put(cuPath, mtVisitor.getReferencedMissingTypes());
 			}
 		}
 		
-		return sourceFilesMap;
+		return referencedMissingTypes;
 	}
-
-	// TODO break this method into smaller ones
-	private IProject createProject() throws CoreException, IOException {
-		// Create project
-		String projectName = getUniqueProjectName();
-		this.project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
-		project.create(null);
-		project.open(null);
-		
-		// Create source folders
-//		IFolder rootSrcFolder = createSourceFolder(DEFAULT_SOURCE_FOLDER_NAME);
-
-		this.javaProject = JavaCore.create(project);
-		addNatureToProject(project, JavaCore.NATURE_ID);
-
-		// TODO: Is this really needed?
-		// Create default output folder
-		// PreferenceConstants.getPreferenceStore().getString(PreferenceConstants.SRCBIN_NAME);
-
-		// Refresh project
-		project.refreshLocal(IResource.DEPTH_INFINITE, null);
-
-		// Collect class paths
-		List<IClasspathEntry> classPaths = new ArrayList<IClasspathEntry>();
-		IClasspathEntry JREClassPath = JavaRuntime.getDefaultJREContainerEntry();
-		classPaths.add(JREClassPath);
-//		IClasspathEntry rootSrcClassPath = JavaCore.newSourceEntry(project.getFullPath().append(rootSrcFolder.getName()));
-//		classPaths.add(rootSrcClassPath);
-
-		// Set compliance settings
-		this.javaProject.setOption(JavaCore.COMPILER_COMPLIANCE, JAVA_PROJECT_VERSION);
-		this.javaProject.setOption(JavaCore.COMPILER_SOURCE, JAVA_PROJECT_VERSION);
-		this.javaProject.setOption(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JAVA_PROJECT_VERSION);
-		this.javaProject.setOption(JavaCore.COMPILER_PB_ASSERT_IDENTIFIER, JavaCore.ERROR);
-		this.javaProject.setOption(JavaCore.COMPILER_PB_ENUM_IDENTIFIER, JavaCore.ERROR);
-
-//		this.rootSrcFolderPackageFragmentRoot = this.javaProject.getPackageFragmentRoot(rootSrcFolder);
-
-		// Add the changeset after-files to the project
-		File root = new File(sourceDir);
-		for (File f : FileUtils.listFiles(root, new SuffixFileFilter(".java"), TrueFileFilter.INSTANCE)) {
-			String pkgName = "";
-			try {
-				pkgName = getPackageNameFromJavaCodeFile(f);
-			} catch (InvalidPackageNameException e) {
-				if (DEFINES.FAIL_ON_ERROR) {
-					throw e;
+	
+	/*
+	 * Creates the source file of a compilation unit and extracts its definitions, comments, the names it uses and its
+	 * type hierarchy. These replace the ones extracted before for the same compilation unit, if any.
+	 */
+	private SourceFile extractCompilationUnit(String cuPath, CompilationUnit cu, MissingTypeVisitor mtVisitor) {
+		LineToCharacterIntervalConverter lineToCharConverter = new JavaLineToCharacterIntervalConverter(cu);
+		SourceFile sf = new SourceFile(cuPath, getFilePath(cuPath), lineToCharConverter);
+		this.sourceFiles.put(cuPath, sf);
+		
+		Log.info(LogCategory.PARSER, "\n***Extracting definitions, uses and missing types from %s", sf.getPath());
+		
+		DefinitionVisitor defVisitor = new DefinitionVisitor(sf, this.bindingKeyTable);
+		UseVisitor useVisitor = new UseVisitor(sf, this.bindingKeyTable);
+		ExtractionVisitor extractionVisitor = new ExtractionVisitor(defVisitor, useVisitor, mtVisitor);
+		extractionVisitor.setUseSpans(getChangedSpans(cuPath, lineToCharConverter));
+		extractionVisitor.setBudget(this.budget);
+		cu.accept(extractionVisitor);
+		
+		this.useVisitors.put(cuPath, useVisitor);
+		this.typeHierarchies.put(cuPath, new TypeHierarchy(cu));
+		extractComments(sf, cu);
+		
+		return sf;
+	}
+	
+	/*
+	 * Parses the changed files again, then the files whose recorded uses may now resolve differently, until no more 
+	 * files are affected. The uses that may resolve differently are the uses of:
+	 * - the binding key of a definition of a changed file, before or after the change,
+	 * - a type declared by a changed file, or any of its members, e.g. an inherited method called on that type,
+	 * - a member of a supertype of a changed file, with the name of a definition of that file before or after the 
+	 * change, e.g. a call of a supertype method that a changed type now overrides. If the supertypes changed, the 
+	 * uses of any member of the old and new supertypes.
+	 * Parsing a file that didn't change can still change its definitions, e.g. the binding key of a method whose 
+	 * parameter has a type that was renamed, or its supertypes. Uses of the binding keys that appeared or disappeared
+	 * this way, and of the old and new types and supertypes, are affected too. Returns the paths of all parsed files.
+	 */
+	private Set<String> reparseChangedAndDependentFiles(List<String> allPaths, Set<String> changedPaths, 
+			Map<String, SourceFile> previousSourceFiles, Map<String, TypeHierarchy> previousTypeHierarchies) 
+			throws CoreException {
+		Set<String> reparsedPaths = new HashSet<String>();
+		List<String> worklist = filterPaths(allPaths, changedPaths);
+		
+		while (!worklist.isEmpty()) {
+			BitSet affectedBindingKeyIds = new BitSet();
+			Set<String> affectedTypeKeys = new HashSet<String>();
+			Set<String> affectedSuperTypeKeys = new HashSet<String>();
+			Set<String> affectedMemberNames = new HashSet<String>();
+			for (Map.Entry<String, CompilationUnit> entry : parseCompilationUnits(worklist).entrySet()) {
+				this.budget.check();
+				String cuPath = entry.getKey();
+				SourceFile previousSf = previousSourceFiles.get(cuPath);
+				SourceFile sf = extractCompilationUnit(cuPath, entry.getValue(), null);
+				TypeHierarchy previousHierarchy = previousTypeHierarchies.get(cuPath);
+				TypeHierarchy hierarchy = this.typeHierarchies.get(cuPath);
+				
+				BitSet ids = getBindingKeyIds(sf);
+				if (changedPaths.contains(cuPath)) {
+					ids.or(getBindingKeyIds(previousSf));
+					affectedTypeKeys.addAll(previousHierarchy.getDeclaredTypeKeys());
+					affectedTypeKeys.addAll(hierarchy.getDeclaredTypeKeys());
+					affectedSuperTypeKeys.addAll(previousHierarchy.getSuperTypeKeys());
+					affectedSuperTypeKeys.addAll(hierarchy.getSuperTypeKeys());
+					addDefinitionNames(affectedMemberNames, previousSf);
+					addDefinitionNames(affectedMemberNames, sf);
+				} else {
+					ids.xor(getBindingKeyIds(previousSf));
+				}
+				affectedBindingKeyIds.or(ids);
+				
+				if (!previousHierarchy.getDeclaredTypeKeys().equals(hierarchy.getDeclaredTypeKeys()) 
+						|| !previousHierarchy.getSuperTypeKeys().equals(hierarchy.getSuperTypeKeys())) {
+					for (TypeHierarchy th : Arrays.asList(previousHierarchy, hierarchy)) {
+						affectedTypeKeys.addAll(th.getDeclaredTypeKeys());
+						affectedTypeKeys.addAll(th.getSuperTypeKeys());
+					}
 				}
-				continue;
 			}
+			addBindingKeyIdsOfTypes(affectedBindingKeyIds, affectedTypeKeys, affectedSuperTypeKeys, affectedMemberNames);
+			reparsedPaths.addAll(worklist);
 			
-			String srcFolderName = getSourceFolderName(f.getAbsolutePath(), pkgName);
+			Log.info(LogCategory.PARSER, "\n***Parsed again: %s", worklist);
 			
-			if (!sourceFolderExists(srcFolderName)) {
-				IClasspathEntry srcClassPath = JavaCore.newSourceEntry(project.getFullPath().append(srcFolderName));
-				classPaths.add(srcClassPath);
+			worklist = new ArrayList<String>();
+			for (String path : allPaths) {
+				if (!reparsedPaths.contains(path) && this.useVisitors.get(path).usesAnyBindingKey(affectedBindingKeyIds)) {
+					worklist.add(path);
+				}
 			}
-			
-			IFolder folder = createSourceFolder(srcFolderName);
-			IPackageFragmentRoot pkgFragRoot = this.javaProject.getPackageFragmentRoot(folder);
-			IPackageFragment pkgFrag = pkgFragRoot.createPackageFragment(pkgName, true, null);
-			
-			this.lastSrcFolderPackageFragmentRoot = pkgFragRoot; // mocks will be added to the last src folder
-
-			String cUnitName = f.getName();
-			
-			@SuppressWarnings("unused")
-			ICompilationUnit cUnit = pkgFrag.createCompilationUnit(cUnitName, readFileToString(f), false, null);
 		}
 		
-		// Set classpath
-		this.javaProject.setRawClasspath(classPaths.toArray(new IClasspathEntry[] {}), null);
-
-		return project;
+		return reparsedPaths;
 	}
 	
-	private String getRelativePath(String path1, String path2) throws IOException {
-		java.nio.file.Path nioPath1 = java.nio.file.Paths.get(path1).normalize().toRealPath();
-		java.nio.file.Path nioPath2 = java.nio.file.Paths.get(path2).normalize().toRealPath();
-		return nioPath1.relativize(nioPath2).toString();
-	}
-	
-	private String getSourceFolderName(String absolutePath, String pkgName) throws IOException {
-		if (pkgName.trim().isEmpty()) {
-			// Avoids source folder nesting conflicts.
-			return DEFAULT_PACKAGELESS_SOURCE_FOLDER_NAME;
+	/*
+	 * Adds the ids of the binding keys of the given types and their members, and of the members of the given 
+	 * supertypes that have one of the given names.
+	 */
+	private void addBindingKeyIdsOfTypes(BitSet ids, Set<String> typeKeys, Set<String> superTypeKeys, 
+			Set<String> memberNames) {
+		if (typeKeys.isEmpty() && superTypeKeys.isEmpty()) {
+			return;
 		}
 		
-		String pkgPath = pkgName.replace(".", "/");
-		String fullSrcFolderPath = absolutePath.split(pkgPath)[0];
-		String relativeSrcFolderPath = getRelativePath(this.sourceDir, fullSrcFolderPath);
-		return DEFAULT_SOURCE_FOLDER_NAME + "/" + relativeSrcFolderPath;
+		for (int id = 0; id < this.bindingKeyTable.size(); ++id) {
+			String key = this.bindingKeyTable.getKey(id);
+			String typeKey = TypeHierarchy.getDeclaringTypeKey(key);
+			if (typeKey != null && (typeKeys.contains(typeKey) 
+					|| (superTypeKeys.contains(typeKey) && memberNames.contains(TypeHierarchy.getMemberName(key))))) {
+				ids.set(id);
+			}
+		}
 	}
 	
-	private boolean sourceFolderExists(String folderPathStr) {
-		return this.project.getFolder(new Path(folderPathStr)).exists();
-	}
-
-	private IFolder createSourceFolder(String folderPathStr) throws CoreException {
-		Path path = new Path(folderPathStr);
-		String currentPathStr = "";
-		IFolder f = null;
-		for (String seg : path.segments()) {
-			if (currentPathStr.isEmpty()) {
-				currentPathStr = seg;
-			} else {
-				currentPathStr += "/" + seg;
-			}
-			
-			f = this.project.getFolder(new Path(currentPathStr));
-			if (!f.exists()) {
-				f.create(true, true, null);
-			}
+	private void addDefinitionNames(Set<String> names, SourceFile sf) {
+		for (Definition d : sf.getDefinitions()) {
+			names.add(d.getName());
 		}
-		return f;
 	}
-
-	private String getPackageNameFromJavaCodeFile(File f) {
-		String sourceCode = readFileToString(f);
-		Matcher m = PACKAGE_NAME_PATTERN.matcher(sourceCode);
-		boolean found = m.find();
-		// "Capturing groups are indexed from left to right, starting at one"
-		// Thus, group 1 is the package name.
-		String pkgName = found ? m.group(1) : "";
-				
-		if (!validPackageName(pkgName)) {
-			throw new InvalidPackageNameException(pkgName);
+	
+	/*
+	 * Copies the definitions and comments of a source file into a new source file, whose uses are then resolved 
+	 * again.
+	 */
+	private SourceFile copySourceFile(SourceFile sf) {
+		SourceFile copy = new SourceFile(sf.getPath(), getFilePath(sf.getPath()), sf.getLineToCharConverter());
+		
+		for (Definition d : sf.getDefinitions()) {
+			Definition dCopy = new Definition(d.getName(), copy, d.getPosition(), this.bindingKeyTable, 
+					d.getBindingKeyId());
+			dCopy.setMethodDefinition(d.isMethodDefinition());
+			dCopy.setTypeDefinition(d.isTypeDefinition());
+		}
+		for (Comment c : sf.getComments()) {
+			new Comment(copy, c.getPosition());
 		}
 		
-		return pkgName;
+		return copy;
 	}
 	
-	private boolean validPackageName(String packageName) {
-		return packageName.matches("[0-9A-Za-z\\.]*");
-	}
-
-	private String readFileToString(File f) {
-		String fileData = null;
-		try {
-			fileData = FileUtils.readFileToString(f);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	private BitSet getBindingKeyIds(SourceFile sf) {
+		BitSet ids = new BitSet();
+		for (Definition d : sf.getDefinitions()) {
+			ids.set(d.getBindingKeyId());
 		}
-		return fileData;
+		return ids;
 	}
-
-	private void addNatureToProject(IProject project, String natureId) throws CoreException {
-		IProjectDescription projectDescription = project.getDescription();
-		String[] natureIds = projectDescription.getNatureIds();
-		String[] newNatureIds = new String[natureIds.length + 1];
-		System.arraycopy(natureIds, 0, newNatureIds, 0, natureIds.length);
-		newNatureIds[natureIds.length] = natureId;
-		projectDescription.setNatureIds(newNatureIds);
-		project.setDescription(projectDescription, null);
+	
+	/*
+	 * Returns the given paths in the order of allPaths.
+	 */
+	private List<String> filterPaths(List<String> allPaths, Collection<String> paths) {
+		List<String> filteredPaths = new ArrayList<String>();
+		for (String path : allPaths) {
+			if (paths.contains(path)) {
+				filteredPaths.add(path);
+			}
+		}
+		return filteredPaths;
 	}
-
-	private String getUniqueProjectName() {
-		return UUID.randomUUID().toString().replace("-", "");
+	
+	private String getFilePath(String cuPath) {
+		return new Path(sourceDir).append(cuPath).toOSString();
 	}
-
-	private Set<Definition> extractDefinitions(List<CompilationUnit> parsedCompilationUnits) throws JavaModelException {
-		Set<Definition> defs = new HashSet<Definition>();
+	
+	private CharacterIntervalSet getChangedSpans(String cuPath, LineToCharacterIntervalConverter lineToCharConverter) {
+		if (this.changedLines == null) {
+			return null;
+		}
 		
-		for (CompilationUnit cu : parsedCompilationUnits) {
-			if (!isCompilationUnitMockClass(cu)) {
-				SourceFile sf = this.sourceFiles.get(getCompilationUnitPath(cu));
-				
-				if (DEFINES.LOG_DEFINITION_VISITOR) {
-					System.out.println("\n***Extracting definitions from " + sf.getPath());
-				}
-				
-				DefinitionVisitor defVisitor = new DefinitionVisitor(sf);
-				cu.accept(defVisitor);
-				defs.addAll(defVisitor.getDefinitions());
+		List<CharacterInterval> changedSpans = new ArrayList<CharacterInterval>();
+		if (this.changedLines.containsKey(cuPath)) {
+			for (LineInterval lines : this.changedLines.get(cuPath)) {
+				changedSpans.add(lineToCharConverter.getCharacterInterval(lines));
 			}
 		}
-		
-		return defs;
+		return new CharacterIntervalSet(changedSpans);
 	}
 	
-	private Set<Use> extractUses(List<CompilationUnit> parsedCompilationUnits) throws JavaModelException {
+	/*
+	 * The use visitors are kept after resolving their uses, so that update() can resolve them again.
+	 */
+	private Set<Use> resolveUses(BindingKeyIndex bindingKeyIndex) {
 		Set<Use> uses = new HashSet<Use>();
-		
-		for (CompilationUnit cu : parsedCompilationUnits) {
-			if (!isCompilationUnitMockClass(cu)) {
-				SourceFile sf = this.sourceFiles.get(getCompilationUnitPath(cu));
-			
-				if (DEFINES.LOG_USE_VISITOR) {
-					System.out.println("\n***Extracting uses from " + sf.getPath());
-				}
-				
-				UseVisitor useVisitor = new UseVisitor(sf, this.definitions, ignoreUsesWithoutAssociatedDefinitions);
-				cu.accept(useVisitor);
-				uses.addAll(useVisitor.getUses());
-			}
+		for (Map.Entry<String, UseVisitor> entry : this.useVisitors.entrySet()) {
+			this.budget.check();
+			SourceFile sf = this.sourceFiles.get(entry.getKey());
+			uses.addAll(entry.getValue().resolveUses(sf, bindingKeyIndex, ignoreUsesWithoutAssociatedDefinitions));
 		}
 		
 		return uses;
 	}
 	
-	private Set<Comment> extractComments(List<CompilationUnit> parsedCompilationUnits) throws JavaModelException {
+	private Set<Comment> extractComments(SourceFile sf, CompilationUnit cu) {
 		Set<Comment> comments = new HashSet<Comment>();
 		
-		for (CompilationUnit cu : parsedCompilationUnits) {
-			if (!isCompilationUnitMockClass(cu)) {
-				SourceFile sf = this.sourceFiles.get(getCompilationUnitPath(cu));
-				
-				if (DEFINES.LOG_COMMENT_VISITOR) {
-					System.out.println("\n***Extracting comments from " + sf.getPath());
-				}
-				
-				for (Object commentObj : cu.getCommentList()) {
-					org.eclipse.jdt.core.dom.Comment commentNode = (org.eclipse.jdt.core.dom.Comment) commentObj;
-					CharacterInterval position = CharacterInterval.fromPositionAndLength(
-							commentNode.getStartPosition(), commentNode.getLength());
-					Comment c = new Comment(sf, position);
-					comments.add(c);
-					
-					if (DEFINES.LOG_COMMENT_VISITOR) {
-						System.out.println("comment " + c);
-					}
-				}
-			}
+		Log.info(LogCategory.COMMENT_VISITOR, "\n***Extracting comments from %s", sf.getPath());
+		
+		for (Object commentObj : cu.getCommentList()) {
+			org.eclipse.jdt.core.dom.Comment commentNode = (org.eclipse.jdt.core.dom.Comment) commentObj;
+			CharacterInterval position = CharacterInterval.fromPositionAndLength(
+					commentNode.getStartPosition(), commentNode.getLength());
+			Comment c = new Comment(sf, position);
+			comments.add(c);
+			Log.trace(LogCategory.COMMENT_VISITOR, "comment %s", c);
 		}
 		
 		return comments;
 	}
 	
-	private boolean isCompilationUnitMockClass(ICompilationUnit cu) {
-		return this.mockTypesPaths.contains(getCompilationUnitPath(cu));
-	}
-
-	private boolean isCompilationUnitMockClass(CompilationUnit cu) {
-		return this.mockTypesPaths.contains(getCompilationUnitPath(cu));
-	}
-	
-	private String getCompilationUnitPath(CompilationUnit cu) {
-		return getCompilationUnitPath(cu.getJavaElement());
-	}
-
-	private String getCompilationUnitPath(IJavaElement cu) {
-		String absolutePath = cu.getPath().makeAbsolute().toString();
-		java.nio.file.Path nioCUnitPath = java.nio.file.Paths.get(absolutePath);
-		return nioCUnitPath.subpath(2, nioCUnitPath.getNameCount()).toString(); // remove project and src folder names
-	}
-	
-	private Collection<MissingType> extractMissingTypes() throws JavaModelException {
-		if (DEFINES.LOG_MISSING_TYPE_VISITOR) {
-			System.out.println("\n***Extracting missing types");
-		}
+	/*
+	 * Parses the given compilation units and adds the types they reference but that couldn't be resolved to 
+	 * missingTypes. Returns the missing types referenced by each compilation unit, only for the compilation units 
+	 * which referenced at least one.
+	 * 
+	 * A full pass also extracts everything else, so that it can be reused as the final parse if no mock is 
+	 * changed afterwards.
+	 */
+	private Map<String, Set<MissingType>> extractMissingTypes(List<String> paths, 
+			Map<String, MissingType> missingTypes, boolean fullPass) throws CoreException {
+		Log.info(LogCategory.MISSING_TYPE_VISITOR, "\n***Extracting missing types");
 		
-		List<CompilationUnit> parsedCompilationUnits = parsePackageFragments();
+		Map<String, CompilationUnit> parsedCompilationUnits = parseCompilationUnits(paths);
+		if (fullPass) {
+			return extract(parsedCompilationUnits, missingTypes);
+		}
 		
-		Map<String, MissingType> missingTypes = new HashMap<String, MissingType>();
-		for (CompilationUnit cu : parsedCompilationUnits) {
-			if (!isCompilationUnitMockClass(cu)) {
-				if (DEFINES.LOG_MISSING_TYPE_VISITOR) {
-					System.out.println("\n***Extracting missing types from " + getCompilationUnitPath(cu));
-				}
-				MissingTypeVisitor mtVisitor = new MissingTypeVisitor(missingTypes);
-				cu.accept(mtVisitor);
+		Map<String, Set<MissingType>> referencedMissingTypes = new LinkedHashMap<String, Set<MissingType>>();
+		for (Map.Entry<String, CompilationUnit> entry : parsedCompilationUnits.entrySet()) {
+			this.budget.check();
+			Log.info(LogCategory.MISSING_TYPE_VISITOR, "\n***Extracting missing types from %s", entry.getKey());
+			MissingTypeVisitor mtVisitor = new MissingTypeVisitor(missingTypes);
+			entry.getValue().accept(mtVisitor);
+			
+			if (!mtVisitor.getReferencedMissingTypes().isEmpty()) {
+				referencedMissingTypes.put(entry.getKey(), mtVisitor.getReferencedMissingTypes());
 			}
 		}
 		
-		return missingTypes.values();
+		return referencedMissingTypes;
 	}
 	
 	/*
-	 * If there is a multi-level hierarchy, this method needs to be run multiple times to create all the necessary 
-	 * mocks and ensure all bindings are correctly detected. The return value indicates whether mocks for all missing
-	 * types were succesfully created. 
-	 * 
-	 * For example, suppose that A <- B <- C denotes an inheritance tree. B and C are in the changeset, but not A.
-	 * Before the bindings between B and another entity are detected, the mock of A must be created.
+	 * Creates a mock for every root missing type whose code differs from the mock created before, if any. A mock 
+	 * changes when it is new or when nested types were found inside it. Returns the root types whose mocks were 
+	 * created.
 	 */
-	private boolean createMocksForMissingTypesSinglePass() throws JavaModelException {
-		Collection<MissingType> missingTypes = extractMissingTypes();
+	private Set<MissingType> updateMocks(Map<String, MissingType> missingTypes, Map<MissingType, String> mocksCode) {
+		Set<MissingType> updatedMocks = new HashSet<MissingType>();
 		
-		for (MissingType mt : missingTypes) {
+		for (MissingType mt : missingTypes.values()) {
 			if (mt.isNested()) {
 				continue; // nested (inner) types dont have their own compilation units
 			}
 			
-			IPackageFragment pkgFrag = this.lastSrcFolderPackageFragmentRoot.createPackageFragment(mt.getPackagePath(), true, null);
-			String cUnitName = mt.getName() + ".java";
-			
-			try {
-				ICompilationUnit cUnit = pkgFrag.getCompilationUnit(cUnitName);
-				if (isCompilationUnitMockClass(cUnit) && cUnit.exists()) {
-					cUnit.delete(true, null);
-					assert(!cUnit.exists());
-				}
-				cUnit = pkgFrag.createCompilationUnit(cUnitName, mt.generateCode(), false, null);
-				assert(cUnit.exists());
-				this.mockTypesPaths.add(getCompilationUnitPath(cUnit));
-			} catch(JavaModelException e) {
-				System.err.println("Failed to create mock: " + cUnitName);
-				e.printStackTrace();
+			String code = mt.generateCode();
+			if (!code.equals(mocksCode.get(mt))) {
+				createMock(mt, code);
+				mocksCode.put(mt, code);
+				updatedMocks.add(mt);
 			}
 		}
 		
-		return missingTypes.isEmpty();
+		return updatedMocks;
 	}
 	
-	private void createMocksForMissingTypes() throws JavaModelException {
-		for (int i = 0; i < MAXIMUM_CREATE_MISSING_MOCKS_ITERATIONS; ++i) {
-			if (createMocksForMissingTypesSinglePass()) {
+	private void createMock(MissingType mt, String code) {
+		try {
+			this.engine.addMockCompilationUnit(mt.getPackagePath(), mt.getName(), code);
+		} catch(CoreException | IOException e) {
+			Log.error(LogCategory.MISSING_TYPE_VISITOR, "failed to create mock %s.java: %s", mt.getName(), e);
+		}
+	}
+	
+	/*
+	 * If there is a multi-level hierarchy, mocks need to be created in multiple steps to ensure all bindings are 
+	 * correctly detected. For example, suppose that A <- B <- C denotes an inheritance tree. B and C are in the 
+	 * changeset, but not A. Before the bindings between B and another entity are detected, the mock of A must be 
+	 * created.
+	 * 
+	 * The first pass parses every compilation unit. Each following pass only parses the compilation units that 
+	 * referenced a missing type whose mock was just created or changed. Missing types are accumulated over the 
+	 * passes, so a mock never loses the nested types found in previous passes. Once no mock changes, a last pass 
+	 * over every compilation unit confirms the set of missing types is stable.
+	 * 
+	 * MAXIMUM_CREATE_MISSING_MOCKS_ITERATIONS counts the first pass and the passes over the compilation units that 
+	 * referenced changed mocks, i.e. one pass per hierarchy level. Confirming passes don't count.
+	 * 
+	 * Each pass is a checkpoint of the budget, so mocks that keep changing can't stall the analysis beyond it.
+	 */
+	private void createMocksForMissingTypes() throws CoreException {
+		List<String> allPaths = getNonMockCompilationUnitPaths();
+		Map<String, MissingType> missingTypes = new HashMap<String, MissingType>();
+		Map<MissingType, String> mocksCode = new HashMap<MissingType, String>();
+		
+		List<String> worklist = allPaths;
+		boolean fullPass = true;
+		int passes = 0;
+		while (true) {
+			this.budget.check();
+			Map<String, Set<MissingType>> referencedMissingTypes = extractMissingTypes(worklist, missingTypes, fullPass);
+			Set<MissingType> updatedMocks = updateMocks(missingTypes, mocksCode);
+			if (!fullPass || passes == 0) {
+				++passes; // confirming passes don't count
+			}
+			
+			if (!updatedMocks.isEmpty()) {
+				this.sourceFiles = null; // the extraction results of the last full pass are now outdated
+				if (passes == MAXIMUM_CREATE_MISSING_MOCKS_ITERATIONS) {
+					break;
+				}
+				worklist = getPathsReferencingMocks(referencedMissingTypes, updatedMocks);
+				fullPass = false;
+			} else if (!fullPass) {
+				worklist = allPaths;
+				fullPass = true;
+			} else if (referencedMissingTypes.isEmpty()) {
 				return;
+			} else {
+				break; // no mock can be created for the remaining missing types
 			}
 		}
 		
@@ -421,33 +555,152 @@ public class Parser {
 			throw new JavaModelException(new Exception("Couldn't create mocks for all missing types!"), IJavaModelStatus.ERROR);
 		}
 	}
-
-	private List<CompilationUnit> parsePackageFragments() throws JavaModelException {
-		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>();
-		IPackageFragment[] packages = JavaCore.create(project).getPackageFragments();
-
-		for (IPackageFragment pkgFrag : packages) {
-//			System.err.println("pkgFragName: " + pkgFrag.getElementName());
-			if (pkgFrag.getKind() == IPackageFragmentRoot.K_SOURCE) {
-				parsedCUnits.addAll(parsePackageFragment(pkgFrag));
+	
+	private List<String> getPathsReferencingMocks(Map<String, Set<MissingType>> referencedMissingTypes, 
+			Set<MissingType> mocks) {
+		List<String> paths = new ArrayList<String>();
+		
+		for (Map.Entry<String, Set<MissingType>> entry : referencedMissingTypes.entrySet()) {
+			for (MissingType mt : entry.getValue()) {
+				if (mocks.contains(mt.getRootType())) {
+					paths.add(entry.getKey());
+					break;
+				}
 			}
 		}
 		
-		return parsedCUnits;
+		return paths;
+	}
+	
+	private List<String> getNonMockCompilationUnitPaths() throws CoreException {
+		List<String> paths = new ArrayList<String>();
+		
+		for (String path : this.engine.getCompilationUnitPaths()) {
+			if (!this.engine.isMockCompilationUnit(path)) {
+				paths.add(path);
+			}
+		}
+		
+		return paths;
 	}
 
-	private List<CompilationUnit> parsePackageFragment(IPackageFragment packageFragment) throws JavaModelException {
-		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>();
+	/*
+	 * The returned map follows the order of the given paths, regardless of how many threads were used. If the budget
+	 * is exceeded while JDT parses, JDT is canceled through the progress monitor of the engine.
+	 */
+	private Map<String, CompilationUnit> parseCompilationUnits(List<String> paths) throws CoreException {
+		List<CompilationUnit> parsedCUnits;
+		try {
+			parsedCUnits = this.parserThreads > 1 && paths.size() > 1
+					? parseCompilationUnitsInParallel(paths)
+					: parseCompilationUnitsSequentially(paths);
+		} catch (OperationCanceledException e) {
+			this.budget.check();
+			throw e;
+		}
 		
-		for (ICompilationUnit cUnit : packageFragment.getCompilationUnits()) {
-			ASTParser parser = ASTParser.newParser(AST.JLS8);
-			parser.setKind(ASTParser.K_COMPILATION_UNIT);
-			parser.setSource(cUnit);
-			parser.setResolveBindings(true);
-			parser.setStatementsRecovery(true);
-			parsedCUnits.add((CompilationUnit) parser.createAST(null));
+		Map<String, CompilationUnit> parsedCUnitsMap = new LinkedHashMap<String, CompilationUnit>();
+		for (int i = 0; i < paths.size(); ++i) {
+			parsedCUnitsMap.put(paths.get(i), parsedCUnits.get(i));
+		}
+		return parsedCUnitsMap;
+	}
+	
+	private List<CompilationUnit> parseCompilationUnitsSequentially(List<String> paths) throws CoreException {
+		if (this.batchParsing) {
+			return this.engine.parse(paths);
 		}
 		
+		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>(paths.size());
+		for (String path : paths) {
+			parsedCUnits.addAll(this.engine.parse(Collections.singletonList(path)));
+		}
 		return parsedCUnits;
 	}
+	
+	private List<CompilationUnit> parseCompilationUnitsInParallel(List<String> paths) throws CoreException {
+		List<List<String>> buckets = splitIntoSizeBalancedBuckets(paths, this.parserThreads);
+		Map<String, CompilationUnit> parsedCUnitsMap = new HashMap<String, CompilationUnit>();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(buckets.size());
+		try {
+			List<Future<List<CompilationUnit>>> futures = new ArrayList<Future<List<CompilationUnit>>>();
+			for (final List<String> bucket : buckets) {
+				futures.add(executor.submit(new Callable<List<CompilationUnit>>() {
+					@Override
+					public List<CompilationUnit> call() throws CoreException {
+						return parseCompilationUnitsSequentially(bucket);
+					}
+				}));
+			}
+			
+			for (int i = 0; i < buckets.size(); ++i) {
+				List<String> bucket = buckets.get(i);
+				List<CompilationUnit> parsedBucket = futures.get(i).get();
+				for (int j = 0; j < bucket.size(); ++j) {
+					parsedCUnitsMap.put(bucket.get(j), parsedBucket.get(j));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CoreException) {
+				throw (CoreException) e.getCause();
+			} else if (e.getCause() instanceof OperationCanceledException) {
+				throw (OperationCanceledException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		// Merge following the original order, so that everything after parsing sees the same ordering as a 
+		// sequential run.
+		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>(paths.size());
+		for (String path : paths) {
+			parsedCUnits.add(parsedCUnitsMap.get(path));
+		}
+		
+		return parsedCUnits;
+	}
+	
+	/*
+	 * Greedily assigns the largest compilation units first, each one to the bucket with the smallest total source 
+	 * length so far. Ties are broken by the original order, so the buckets are deterministic.
+	 */
+	private List<List<String>> splitIntoSizeBalancedBuckets(List<String> paths, int maxBuckets) throws CoreException {
+		final int[] sizes = new int[paths.size()];
+		List<Integer> indexesBySize = new ArrayList<Integer>(paths.size());
+		for (int i = 0; i < paths.size(); ++i) {
+			sizes[i] = this.engine.getCompilationUnitLength(paths.get(i));
+			indexesBySize.add(i);
+		}
+		Collections.sort(indexesBySize, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return sizes[i1] != sizes[i2] ? Integer.compare(sizes[i2], sizes[i1]) : Integer.compare(i1, i2);
+			}
+		});
+		
+		int numBuckets = Math.min(maxBuckets, paths.size());
+		List<List<String>> buckets = new ArrayList<List<String>>(numBuckets);
+		long[] bucketSizes = new long[numBuckets];
+		for (int i = 0; i < numBuckets; ++i) {
+			buckets.add(new ArrayList<String>());
+		}
+		
+		for (int i : indexesBySize) {
+			int smallestBucket = 0;
+			for (int b = 1; b < numBuckets; ++b) {
+				if (bucketSizes[b] < bucketSizes[smallestBucket]) {
+					smallestBucket = b;
+				}
+			}
+			buckets.get(smallestBucket).add(paths.get(i));
+			bucketSizes[smallestBucket] += sizes[i];
+		}
+		
+		return buckets;
+	}
 }
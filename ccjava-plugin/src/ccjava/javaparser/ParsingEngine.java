@@ -0,0 +1,60 @@
+package ccjava.javaparser;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * Holds the compilation units of a changeset and parses them with binding resolution. Compilation units are
+ * identified by their path inside the changeset.
+ */
+public interface ParsingEngine {
+	/**
+	 * Loads the .java files of the changeset. Must be called before any other method.
+	 */
+	void load() throws CoreException, IOException;
+	
+	/**
+	 * Returns the paths of all compilation units, including mocks, in a deterministic order.
+	 */
+	List<String> getCompilationUnitPaths() throws CoreException;
+	
+	/**
+	 * Returns the length in characters of the source code of a compilation unit.
+	 */
+	int getCompilationUnitLength(String path) throws CoreException;
+	
+	/**
+	 * Parses the given compilation units. The returned list follows the order of the given paths. Implementations
+	 * may resolve all the given compilation units in a single lookup environment.
+	 */
+	List<CompilationUnit> parse(List<String> paths) throws CoreException;
+	
+	/**
+	 * Reads again the source code of the given compilation units from the changeset files, after these files 
+	 * changed. Compilation units can't be added or removed this way.
+	 */
+	void reload(List<String> paths) throws CoreException, IOException;
+	
+	/**
+	 * Adds a compilation unit declaring a mock of a missing type. A previously added mock with the same name is
+	 * replaced. Returns the path of the mock compilation unit.
+	 */
+	String addMockCompilationUnit(String packageName, String typeName, String code) throws CoreException, IOException;
+	
+	boolean isMockCompilationUnit(String path);
+	
+	/**
+	 * Sets the monitor given to the long-running JDT operations, which end with an OperationCanceledException once
+	 * it is canceled. If null (default), they can't be canceled. dispose() never uses it, so it always cleans up.
+	 */
+	void setProgressMonitor(IProgressMonitor monitor);
+	
+	/**
+	 * Releases everything created by load(). The engine can't be used afterwards.
+	 */
+	void dispose() throws CoreException, IOException;
+}
@@ -0,0 +1,110 @@
+package ccjava.javaparser;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * The types declared by a compilation unit, top-level and member types, and all their supertypes, as normalized
+ * binding keys. Local and anonymous types are left out, since other compilation units can't reference them.
+ *
+ * Used by Parser.update() to find the compilation units whose uses may resolve differently after a change, e.g. a
+ * call of a method of a supertype that a changed type now overrides.
+ */
+class TypeHierarchy {
+	private Set<String> declaredTypeKeys;
+	private Set<String> superTypeKeys;
+	
+	public TypeHierarchy(CompilationUnit cu) {
+		Validate.notNull(cu);
+		
+		this.declaredTypeKeys = new HashSet<String>();
+		this.superTypeKeys = new HashSet<String>();
+		addTypeDeclarations(cu.types());
+		this.superTypeKeys.removeAll(this.declaredTypeKeys);
+	}
+	
+	public Set<String> getDeclaredTypeKeys() {
+		return Collections.unmodifiableSet(this.declaredTypeKeys);
+	}
+	
+	/**
+	 * The supertypes of the declared types, direct or not, that are not declared by the compilation unit itself.
+	 */
+	public Set<String> getSuperTypeKeys() {
+		return Collections.unmodifiableSet(this.superTypeKeys);
+	}
+	
+	/**
+	 * Returns the key of the type declaring the element of the given binding key, or of the element type for array
+	 * types, e.g. "Lp/A;" for "Lp/A;.m(I)V" or "[Lp/A;". Returns null if the key has no type, e.g. for primitive
+	 * types and packages.
+	 */
+	public static String getDeclaringTypeKey(String bindingKey) {
+		int end = bindingKey.indexOf(';');
+		if (end < 0) {
+			return null;
+		}
+		
+		int start = 0;
+		while (bindingKey.charAt(start) == '[') {
+			++start;
+		}
+		return bindingKey.substring(start, end + 1);
+	}
+	
+	/**
+	 * Returns the name of the member of the given binding key, e.g. "m" for "Lp/A;.m(I)V" or "f" for "Lp/A;.f)I".
+	 * Returns null if the key isn't the key of a member.
+	 */
+	public static String getMemberName(String bindingKey) {
+		int end = bindingKey.indexOf(';');
+		if (end < 0 || end + 1 >= bindingKey.length() || bindingKey.charAt(end + 1) != '.') {
+			return null;
+		}
+		
+		int start = end + 2;
+		int i = start;
+		while (i < bindingKey.length() && Character.isJavaIdentifierPart(bindingKey.charAt(i))) {
+			++i;
+		}
+		return bindingKey.substring(start, i);
+	}
+	
+	private void addTypeDeclarations(List<?> bodyDeclarations) {
+		for (Object o : bodyDeclarations) {
+			if (o instanceof AbstractTypeDeclaration) {
+				AbstractTypeDeclaration td = (AbstractTypeDeclaration) o;
+				ITypeBinding binding = td.resolveBinding();
+				if (binding != null) {
+					binding = binding.getErasure();
+					this.declaredTypeKeys.add(getKey(binding));
+					addSuperTypes(binding);
+				}
+				addTypeDeclarations(td.bodyDeclarations());
+			}
+		}
+	}
+	
+	private void addSuperTypes(ITypeBinding type) {
+		ITypeBinding superclass = type.getSuperclass();
+		if (superclass != null && this.superTypeKeys.add(getKey(superclass.getErasure()))) {
+			addSuperTypes(superclass.getErasure());
+		}
+		for (ITypeBinding i : type.getInterfaces()) {
+			if (this.superTypeKeys.add(getKey(i.getErasure()))) {
+				addSuperTypes(i.getErasure());
+			}
+		}
+	}
+	
+	private static String getKey(ITypeBinding type) {
+		return BindingKeyParser.parse(type.getKey());
+	}
+}
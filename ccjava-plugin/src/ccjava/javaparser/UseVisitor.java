@@ -1,10 +1,8 @@
 package ccjava.javaparser;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.commons.lang3.Validate;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -13,35 +11,103 @@ import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.SimpleName;
 
-import ccjava.DEFINES;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+import ccjava.logging.LogLevel;
+import ccjava.model.BindingKeyIndex;
+import ccjava.model.BindingKeyTable;
 import ccjava.model.CharacterInterval;
 import ccjava.model.Definition;
 import ccjava.model.SourceFile;
 import ccjava.model.Use;
 
+/**
+ * Records the names used in a compilation unit. Uses are only created afterwards, by resolveUses(), because the 
+ * associated definitions may be in compilation units that haven't been visited yet. Recorded uses don't reference 
+ * any AST node, so the compilation unit can be released before resolving them.
+ */
 public class UseVisitor extends ASTVisitor {
+	private static class RecordedUse {
+		public String name;
+		public CharacterInterval position;
+		public int bindingKeyId;
+		public boolean constructor;
+		
+		public RecordedUse(String name, CharacterInterval position, int bindingKeyId, boolean constructor) {
+			this.name = name;
+			this.position = position;
+			this.bindingKeyId = bindingKeyId;
+			this.constructor = constructor;
+		}
+	}
+	
 	private SourceFile sourceFile;
-	private List<Use> uses;
-	private boolean ignoreUsesWithoutAssociatedDefinitions;
-	private Map<String, Definition> bindingKeyToDefinitionMap;
+	private BindingKeyTable bindingKeyTable;
+	private List<RecordedUse> recordedUses;
 	
-	public UseVisitor(SourceFile sourceFile, Collection<Definition> definitions, 
-			boolean ignoreUsesWithoutAssociatedDefinitions) {
+	public UseVisitor(SourceFile sourceFile, BindingKeyTable bindingKeyTable) {
 		Validate.notNull(sourceFile);
-		Validate.notNull(definitions);
+		Validate.notNull(bindingKeyTable);
 		
 		this.sourceFile = sourceFile;
-		this.uses = new ArrayList<Use>();
-		this.ignoreUsesWithoutAssociatedDefinitions = ignoreUsesWithoutAssociatedDefinitions;
+		this.bindingKeyTable = bindingKeyTable;
+		this.recordedUses = new ArrayList<RecordedUse>();
+	}
+
+	/**
+	 * Creates the uses recorded so far, associating them with the definitions that have the same binding key. The
+	 * index is only read, so it can be shared by visitors resolving uses concurrently. It must use the same binding
+	 * key table as this visitor.
+	 */
+	public List<Use> resolveUses(BindingKeyIndex bindingKeyIndex, boolean ignoreUsesWithoutAssociatedDefinitions) {
+		return resolveUses(this.sourceFile, bindingKeyIndex, ignoreUsesWithoutAssociatedDefinitions);
+	}
+	
+	/**
+	 * Same as resolveUses(bindingKeyIndex, ignoreUsesWithoutAssociatedDefinitions), but the uses are created in 
+	 * sourceFile, e.g. a copy of the visited source file. Recorded uses are kept, so they can be resolved again.
+	 */
+	public List<Use> resolveUses(SourceFile sourceFile, BindingKeyIndex bindingKeyIndex, 
+			boolean ignoreUsesWithoutAssociatedDefinitions) {
+		Validate.notNull(sourceFile);
+		Validate.notNull(bindingKeyIndex);
+		Validate.isTrue(bindingKeyIndex.getBindingKeyTable() == this.bindingKeyTable);
 		
-		bindingKeyToDefinitionMap = new HashMap<String, Definition>();
-		for (Definition d : definitions) {
-			bindingKeyToDefinitionMap.put(d.getBindingKey(), d);
+		List<Use> uses = new ArrayList<Use>();
+		
+		for (RecordedUse ru : this.recordedUses) {
+			Definition associatedDefinition = bindingKeyIndex.lookup(ru.bindingKeyId);
+			String useType = ru.constructor ? "constructor" : "simplename";
+			
+			if (ignoreUsesWithoutAssociatedDefinitions && associatedDefinition == null) {
+				Log.debug(LogCategory.USE_VISITOR, "skipped %s use (no associated def): %s | %s | %s", useType, ru.name, 
+						ru.position, this.bindingKeyTable.getKey(ru.bindingKeyId));
+			} else if (!ru.constructor && associatedDefinition != null && associatedDefinition.isTypeDefinition()) {
+				Log.debug(LogCategory.USE_VISITOR, "skipped simplename use (type uses are not considered): %s | %s | %s", 
+						ru.name, ru.position, this.bindingKeyTable.getKey(ru.bindingKeyId));
+			} else {
+				Use u = new Use(ru.name, sourceFile, ru.position, this.bindingKeyTable, ru.bindingKeyId, 
+						associatedDefinition);
+				log(useType, u);
+				uses.add(u);
+			}
 		}
+		
+		return uses;
 	}
-
-	public List<Use> getUses() {
-		return this.uses;
+	
+	/**
+	 * Whether any recorded use has one of the given binding key ids, regardless of the definitions it resolves to.
+	 */
+	public boolean usesAnyBindingKey(BitSet bindingKeyIds) {
+		Validate.notNull(bindingKeyIds);
+		
+		for (RecordedUse ru : this.recordedUses) {
+			if (bindingKeyIds.get(ru.bindingKeyId)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	// This is a special case for constructors because the SimpleName node inside a constructor invocation 
@@ -53,18 +119,10 @@ public class UseVisitor extends ASTVisitor {
 
 		if (node.resolveConstructorBinding() != null) {
 			CharacterInterval position = getPositionFromNode(node);
-			String bindingKey = getBindingKey(node.resolveConstructorBinding());
-			Definition associatedDefinition = findAssociatedDefinition(bindingKey);
-			
-			if (ignoreUsesWithoutAssociatedDefinitions && associatedDefinition == null) {
-				log(String.format("skipped constructor use (no associated def): %s | %s | %s", name, position, bindingKey));
-			} else {
-				Use u = new Use(name, sourceFile, position, bindingKey, associatedDefinition);
-				log("constructor use", u);
-				this.uses.add(u);
-			}
+			int bindingKeyId = getBindingKeyId(node.resolveConstructorBinding());
+			this.recordedUses.add(new RecordedUse(name, position, bindingKeyId, true));
 		} else {
-			log("skipped constructor use (no binding): " + name);
+			Log.debug(LogCategory.USE_VISITOR, "skipped constructor use (no binding): %s", name);
 		}
 		
 		return true;
@@ -79,20 +137,10 @@ public class UseVisitor extends ASTVisitor {
 				CharacterInterval position = getPositionFromNode(node);
 				
 				if (node.resolveBinding() != null) {
-					String bindingKey = getBindingKey(node.resolveBinding());
-					Definition associatedDefinition = findAssociatedDefinition(bindingKey);
-					
-					if (ignoreUsesWithoutAssociatedDefinitions && associatedDefinition == null) {
-						log(String.format("skipped simplename use (no associated def): %s | %s | %s", name, position, bindingKey));
-					} else if (associatedDefinition != null && associatedDefinition.isTypeDefinition()) {
-						log(String.format("skipped simplename use (type uses are not considered): %s | %s | %s", name, position, bindingKey));
-					} else {
-						Use u = new Use(name, sourceFile, position, bindingKey, associatedDefinition);
-						log("simplename use", u);
-						this.uses.add(u);
-					}
+					int bindingKeyId = getBindingKeyId(node.resolveBinding());
+					this.recordedUses.add(new RecordedUse(name, position, bindingKeyId, false));
 				} else {
-					log(String.format("skipped simplename use (no binding): %s | %s", name, position));
+					Log.debug(LogCategory.USE_VISITOR, "skipped simplename use (no binding): %s | %s", name, position);
 				}
 		}
 		
@@ -112,31 +160,20 @@ public class UseVisitor extends ASTVisitor {
 		return false;
 	}
 
-	private void log(String msg) {
-		if (DEFINES.LOG_USE_VISITOR) {
-			System.out.println(msg);
-		}
-	}
-	
-	private void log(String msg, Use use) {
-		if (DEFINES.LOG_USE_VISITOR) {
-			//System.out.printf("%s / %s @ %s%n", name, bindingKey, position);
-			System.out.printf("%s %s%n", msg, use.toString());
+	private void log(String useType, Use use) {
+		if (Log.isEnabled(LogCategory.USE_VISITOR, LogLevel.TRACE)) {
+			Log.trace(LogCategory.USE_VISITOR, "%s use %s", useType, use);
 			if (use.getAssociatedDefinition() != null) {
-				System.out.println("---> " + use.getAssociatedDefinition());
+				Log.trace(LogCategory.USE_VISITOR, "---> %s", use.getAssociatedDefinition());
 			}
 		}
 	}
 	
-	private Definition findAssociatedDefinition(String bindingKey) {
-		return this.bindingKeyToDefinitionMap.get(bindingKey);
-	}
-	
 	private CharacterInterval getPositionFromNode(ASTNode node) {
 		return CharacterInterval.fromPositionAndLength(node.getStartPosition(), node.getLength());
 	}
 	
-	private String getBindingKey(IBinding binding) {
-		return BindingKeyParser.parse(binding.getKey());
+	private int getBindingKeyId(IBinding binding) {
+		return this.bindingKeyTable.getId(BindingKeyParser.parse(binding.getKey()));
 	}
 }
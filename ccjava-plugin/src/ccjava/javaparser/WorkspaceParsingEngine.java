@@ -0,0 +1,334 @@
+package ccjava.javaparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.lang3.Validate;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.launching.JavaRuntime;
+
+/**
+ * Parsing engine that adds the changeset files to a new Java project in the Eclipse workspace and parses them
+ * through the Java model.
+ *
+ * Mocks for missing types are added to a source folder of their own, whose name is kept in their paths, so they
+ * don't depend on the source folders of the changeset.
+ */
+public class WorkspaceParsingEngine implements ParsingEngine {
+	private static final String JAVA_PROJECT_VERSION = JavaCore.VERSION_1_8;
+	private static final String DEFAULT_SOURCE_FOLDER_NAME = "src";
+	private static final String DEFAULT_PACKAGELESS_SOURCE_FOLDER_NAME = "srcmisc";
+	private static final String MOCKS_SOURCE_FOLDER_NAME = "ccjava-mocks";
+	
+	private String sourceDir;
+	private IProject project;
+	private IJavaProject javaProject;
+	private IPackageFragmentRoot mocksPackageFragmentRoot;
+	private IProgressMonitor monitor;
+	
+	private Map<String, ICompilationUnit> compilationUnits;
+	private Map<String, File> changesetFiles;
+	private Set<String> mockTypesPaths;
+	
+	public WorkspaceParsingEngine(String sourceDir) {
+		Validate.notBlank(sourceDir);
+		
+		this.sourceDir = sourceDir;
+		this.compilationUnits = new LinkedHashMap<String, ICompilationUnit>();
+		this.changesetFiles = new HashMap<String, File>();
+		this.mockTypesPaths = new HashSet<String>();
+	}
+
+	@Override
+	public void load() throws CoreException, IOException {
+		createProject();
+	}
+
+	@Override
+	public List<String> getCompilationUnitPaths() throws CoreException {
+		this.compilationUnits.clear();
+		
+		for (IPackageFragment pkgFrag : this.javaProject.getPackageFragments()) {
+			if (pkgFrag.getKind() == IPackageFragmentRoot.K_SOURCE) {
+				for (ICompilationUnit cUnit : pkgFrag.getCompilationUnits()) {
+					this.compilationUnits.put(getCompilationUnitPath(cUnit), cUnit);
+				}
+			}
+		}
+		
+		return new ArrayList<String>(this.compilationUnits.keySet());
+	}
+
+	@Override
+	public int getCompilationUnitLength(String path) throws CoreException {
+		return getCompilationUnit(path).getSource().length();
+	}
+
+	@Override
+	public List<CompilationUnit> parse(List<String> paths) throws CoreException {
+		List<ICompilationUnit> cUnits = new ArrayList<ICompilationUnit>(paths.size());
+		for (String path : paths) {
+			cUnits.add(getCompilationUnit(path));
+		}
+		
+		return cUnits.size() == 1
+				? parseCompilationUnit(cUnits.get(0))
+				: parseCompilationUnitsInBatch(cUnits);
+	}
+
+	@Override
+	public void reload(List<String> paths) throws CoreException {
+		for (String path : paths) {
+			File file = this.changesetFiles.get(path);
+			Validate.notNull(file, "not a changeset file: %s", path);
+			
+			ICompilationUnit cUnit = getCompilationUnit(path);
+			cUnit.getBuffer().setContents(JavaFile.readFileToString(file));
+			cUnit.save(this.monitor, true);
+		}
+	}
+
+	@Override
+	public String addMockCompilationUnit(String packageName, String typeName, String code) throws CoreException {
+		IPackageFragment pkgFrag = this.mocksPackageFragmentRoot.createPackageFragment(packageName, true, 
+				this.monitor);
+		String cUnitName = typeName + ".java";
+		
+		ICompilationUnit cUnit = pkgFrag.getCompilationUnit(cUnitName);
+		if (isMockCompilationUnit(getCompilationUnitPath(cUnit)) && cUnit.exists()) {
+			cUnit.delete(true, this.monitor);
+			assert(!cUnit.exists());
+		}
+		cUnit = pkgFrag.createCompilationUnit(cUnitName, code, false, this.monitor);
+		assert(cUnit.exists());
+		
+		String path = getCompilationUnitPath(cUnit);
+		this.mockTypesPaths.add(path);
+		this.compilationUnits.put(path, cUnit);
+		return path;
+	}
+
+	@Override
+	public boolean isMockCompilationUnit(String path) {
+		return this.mockTypesPaths.contains(path);
+	}
+	
+	@Override
+	public void setProgressMonitor(IProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	@Override
+	public void dispose() throws CoreException {
+		if (this.project != null && this.project.exists()) {
+			this.project.delete(true, true, null);
+		}
+		this.compilationUnits.clear();
+	}
+
+	// TODO break this method into smaller ones
+	private IProject createProject() throws CoreException, IOException {
+		// Create project
+		String projectName = getUniqueProjectName();
+		this.project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
+		project.create(this.monitor);
+		project.open(this.monitor);
+		
+		// Create source folders
+//		IFolder rootSrcFolder = createSourceFolder(DEFAULT_SOURCE_FOLDER_NAME);
+
+		this.javaProject = JavaCore.create(project);
+		addNatureToProject(project, JavaCore.NATURE_ID);
+		
+		// TODO: Is this really needed?
+		// Create default output folder
+		// PreferenceConstants.getPreferenceStore().getString(PreferenceConstants.SRCBIN_NAME);
+		
+		// Refresh project
+		project.refreshLocal(IResource.DEPTH_INFINITE, this.monitor);
+		
+		// Collect class paths
+		List<IClasspathEntry> classPaths = new ArrayList<IClasspathEntry>();
+		IClasspathEntry JREClassPath = JavaRuntime.getDefaultJREContainerEntry();
+		classPaths.add(JREClassPath);
+//		IClasspathEntry rootSrcClassPath = JavaCore.newSourceEntry(project.getFullPath().append(rootSrcFolder.getName()));
+//		classPaths.add(rootSrcClassPath);
+
+		// Set compliance settings
+		this.javaProject.setOption(JavaCore.COMPILER_COMPLIANCE, JAVA_PROJECT_VERSION);
+		this.javaProject.setOption(JavaCore.COMPILER_SOURCE, JAVA_PROJECT_VERSION);
+		this.javaProject.setOption(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JAVA_PROJECT_VERSION);
+		this.javaProject.setOption(JavaCore.COMPILER_PB_ASSERT_IDENTIFIER, JavaCore.ERROR);
+		this.javaProject.setOption(JavaCore.COMPILER_PB_ENUM_IDENTIFIER, JavaCore.ERROR);
+
+//		this.rootSrcFolderPackageFragmentRoot = this.javaProject.getPackageFragmentRoot(rootSrcFolder);
+
+		// Add the changeset after-files to the project
+		for (JavaFile f : JavaFile.list(this.sourceDir)) {
+			String srcFolderName = getSourceFolderName(f);
+			
+			if (!sourceFolderExists(srcFolderName)) {
+				IClasspathEntry srcClassPath = JavaCore.newSourceEntry(project.getFullPath().append(srcFolderName));
+				classPaths.add(srcClassPath);
+			}
+			
+			IFolder folder = createSourceFolder(srcFolderName);
+			IPackageFragmentRoot pkgFragRoot = this.javaProject.getPackageFragmentRoot(folder);
+			IPackageFragment pkgFrag = pkgFragRoot.createPackageFragment(f.getPackageName(), true, this.monitor);
+			
+			String cUnitName = f.getFile().getName();
+			
+			ICompilationUnit cUnit = pkgFrag.createCompilationUnit(cUnitName, f.getSource(), false, this.monitor);
+			this.changesetFiles.put(getCompilationUnitPath(cUnit), f.getFile());
+		}
+		
+		// Create the mocks source folder
+		IFolder mocksFolder = createSourceFolder(MOCKS_SOURCE_FOLDER_NAME);
+		classPaths.add(JavaCore.newSourceEntry(mocksFolder.getFullPath()));
+		this.mocksPackageFragmentRoot = this.javaProject.getPackageFragmentRoot(mocksFolder);
+		
+		// Set classpath
+		this.javaProject.setRawClasspath(classPaths.toArray(new IClasspathEntry[] {}), this.monitor);
+		
+		return project;
+	}
+
+	private String getSourceFolderName(JavaFile f) {
+		if (f.isPackageless()) {
+			// Avoids source folder nesting conflicts.
+			return DEFAULT_PACKAGELESS_SOURCE_FOLDER_NAME;
+		}
+		
+		return DEFAULT_SOURCE_FOLDER_NAME + "/" + f.getSourceFolderPath();
+	}
+
+	private boolean sourceFolderExists(String folderPathStr) {
+		return this.project.getFolder(new Path(folderPathStr)).exists();
+	}
+
+	private IFolder createSourceFolder(String folderPathStr) throws CoreException {
+		Path path = new Path(folderPathStr);
+		String currentPathStr = "";
+		IFolder f = null;
+		for (String seg : path.segments()) {
+			if (currentPathStr.isEmpty()) {
+				currentPathStr = seg;
+			} else {
+				currentPathStr += "/" + seg;
+			}
+			
+			f = this.project.getFolder(new Path(currentPathStr));
+			if (!f.exists()) {
+				f.create(true, true, this.monitor);
+			}
+		}
+		return f;
+	}
+
+	private void addNatureToProject(IProject project, String natureId) throws CoreException {
+		IProjectDescription projectDescription = project.getDescription();
+		String[] natureIds = projectDescription.getNatureIds();
+		String[] newNatureIds = new String[natureIds.length + 1];
+		System.arraycopy(natureIds, 0, newNatureIds, 0, natureIds.length);
+		newNatureIds[natureIds.length] = natureId;
+		projectDescription.setNatureIds(newNatureIds);
+		project.setDescription(projectDescription, this.monitor);
+	}
+
+	private String getUniqueProjectName() {
+		return UUID.randomUUID().toString().replace("-", "");
+	}
+
+	private ICompilationUnit getCompilationUnit(String path) throws CoreException {
+		if (!this.compilationUnits.containsKey(path)) {
+			getCompilationUnitPaths();
+		}
+		
+		ICompilationUnit cUnit = this.compilationUnits.get(path);
+		Validate.notNull(cUnit, "unknown compilation unit: %s", path);
+		return cUnit;
+	}
+
+	private String getCompilationUnitPath(IJavaElement cu) {
+		String absolutePath = cu.getPath().makeAbsolute().toString();
+		java.nio.file.Path nioCUnitPath = java.nio.file.Paths.get(absolutePath);
+		if (nioCUnitPath.getName(1).toString().equals(MOCKS_SOURCE_FOLDER_NAME)) {
+			return nioCUnitPath.subpath(1, nioCUnitPath.getNameCount()).toString(); // remove project name
+		}
+		return nioCUnitPath.subpath(2, nioCUnitPath.getNameCount()).toString(); // remove project and src folder names
+	}
+
+	private List<CompilationUnit> parseCompilationUnit(ICompilationUnit cUnit) {
+		ASTParser parser = createASTParser();
+		parser.setSource(cUnit);
+		
+		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>(1);
+		parsedCUnits.add((CompilationUnit) parser.createAST(this.monitor));
+		return parsedCUnits;
+	}
+
+	/*
+	 * Parses all compilation units with a single ASTParser. ECJ then resolves the JRE and the types of the changeset
+	 * only once, instead of once per compilation unit, and the bindings of different files come from the same
+	 * lookup environment.
+	 */
+	private List<CompilationUnit> parseCompilationUnitsInBatch(List<ICompilationUnit> cUnits) {
+		if (cUnits.isEmpty()) {
+			return new ArrayList<CompilationUnit>();
+		}
+		
+		final Map<ICompilationUnit, CompilationUnit> parsedCUnitsMap = new HashMap<ICompilationUnit, CompilationUnit>();
+		ASTRequestor requestor = new ASTRequestor() {
+			@Override
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				parsedCUnitsMap.put(source, ast);
+			}
+		};
+		
+		ASTParser parser = createASTParser();
+		parser.setProject(this.javaProject);
+		parser.createASTs(cUnits.toArray(new ICompilationUnit[cUnits.size()]), new String[0], requestor, this.monitor);
+		
+		// ASTs are not necessarily accepted in the same order as the compilation units were given.
+		List<CompilationUnit> parsedCUnits = new ArrayList<CompilationUnit>(cUnits.size());
+		for (ICompilationUnit cUnit : cUnits) {
+			parsedCUnits.add(parsedCUnitsMap.get(cUnit));
+		}
+		
+		return parsedCUnits;
+	}
+
+	private ASTParser createASTParser() {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setResolveBindings(true);
+		parser.setStatementsRecovery(true);
+		return parser;
+	}
+}
@@ -0,0 +1,94 @@
+package ccjava.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the log messages from a background thread. Messages are taken from the queue in batches and written through
+ * a large buffer, which is only flushed when the queue is empty. When the queue is full, the threads logging wait,
+ * so a slow console slows down the analysis instead of running out of memory.
+ */
+class AsyncLogSink {
+	private static final int QUEUE_CAPACITY = 64 * 1024;
+	private static final int BUFFER_SIZE = 256 * 1024;
+	private static final String END_OF_LOG = new String("end of log"); // compared by identity
+	
+	private BlockingQueue<String> queue;
+	private Writer out;
+	private Thread writerThread;
+	
+	public AsyncLogSink(OutputStream out) {
+		this.queue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+		this.out = new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeMessages();
+			}
+		}, "ccjava-log");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+	
+	public void write(String msg) {
+		try {
+			this.queue.put(msg);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Writes the queued messages and stops the background thread.
+	 */
+	public void close() {
+		boolean interrupted = false;
+		boolean endQueued = false;
+		while (this.writerThread.isAlive()) {
+			try {
+				if (!endQueued) {
+					this.queue.put(END_OF_LOG);
+					endQueued = true;
+				}
+				this.writerThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void writeMessages() {
+		String lineSeparator = System.lineSeparator();
+		List<String> batch = new ArrayList<String>();
+		try {
+			while (true) {
+				batch.add(this.queue.take());
+				this.queue.drainTo(batch);
+				for (String msg : batch) {
+					if (msg == END_OF_LOG) {
+						this.out.flush();
+						return;
+					}
+					this.out.write(msg);
+					this.out.write(lineSeparator);
+				}
+				batch.clear();
+				if (this.queue.isEmpty()) {
+					this.out.flush();
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			System.err.println("Failed to write the log: " + e);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package ccjava.logging;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Logging of the analysis. Each category has its own level, set at launch time by configure(). Disabled messages
+ * cost one array read: they aren't formatted and their arguments' toString() isn't called. Call sites that need
+ * more work to build a message should check isEnabled() first.
+ *
+ * Messages are written to System.out. With setAsync(true), they are queued and written in large chunks by a
+ * background thread, so the analysis doesn't wait for the console. close() writes the queued messages and must be
+ * called when the analysis ends.
+ */
+public final class Log {
+	public static final LogLevel DEFAULT_LEVEL = LogLevel.INFO;
+	
+	private static volatile LogLevel[] levels = createLevels(DEFAULT_LEVEL);
+	private static volatile AsyncLogSink asyncSink;
+	
+	private Log() {
+	}
+	
+	/**
+	 * Sets the levels from a comma-separated list of "level" or "category=level" entries. The "level" entry applies
+	 * to all categories and is overridden by the "category=level" entries, e.g. "warn,useVisitor=trace". Categories
+	 * that aren't set have the default level (info).
+	 */
+	public static void configure(String spec) {
+		Validate.notNull(spec);
+		
+		LogLevel defaultLevel = DEFAULT_LEVEL;
+		Map<LogCategory, LogLevel> categoryLevels = new EnumMap<LogCategory, LogLevel>(LogCategory.class);
+		for (String entry : spec.split(",")) {
+			entry = entry.trim();
+			int equalsIndex = entry.indexOf('=');
+			if (entry.isEmpty()) {
+				continue;
+			} else if (equalsIndex < 0) {
+				defaultLevel = parseLevel(entry);
+			} else {
+				LogCategory category = LogCategory.fromName(entry.substring(0, equalsIndex).trim());
+				categoryLevels.put(category, parseLevel(entry.substring(equalsIndex + 1)));
+			}
+		}
+		
+		LogLevel[] newLevels = createLevels(defaultLevel);
+		for (Map.Entry<LogCategory, LogLevel> e : categoryLevels.entrySet()) {
+			newLevels[e.getKey().ordinal()] = e.getValue();
+		}
+		levels = newLevels;
+	}
+	
+	public static void setLevel(LogCategory category, LogLevel level) {
+		Validate.notNull(category);
+		Validate.notNull(level);
+		
+		LogLevel[] newLevels = levels.clone();
+		newLevels[category.ordinal()] = level;
+		levels = newLevels;
+	}
+	
+	public static LogLevel getLevel(LogCategory category) {
+		return levels[category.ordinal()];
+	}
+	
+	public static boolean isEnabled(LogCategory category, LogLevel level) {
+		return level != LogLevel.OFF && level.ordinal() <= levels[category.ordinal()].ordinal();
+	}
+	
+	/**
+	 * Starts or stops writing the messages from a background thread. Stopping writes the queued messages first.
+	 */
+	public static synchronized void setAsync(boolean async) {
+		if (async && asyncSink == null) {
+			asyncSink = new AsyncLogSink(System.out);
+		} else if (!async && asyncSink != null) {
+			AsyncLogSink sink = asyncSink;
+			asyncSink = null;
+			sink.close();
+		}
+	}
+	
+	/**
+	 * Writes the queued messages and goes back to writing them synchronously.
+	 */
+	public static void close() {
+		setAsync(false);
+	}
+	
+	public static void log(LogCategory category, LogLevel level, String msg) {
+		if (isEnabled(category, level)) {
+			write(msg);
+		}
+	}
+	
+	public static void log(LogCategory category, LogLevel level, String format, Object... args) {
+		if (isEnabled(category, level)) {
+			write(String.format(format, args));
+		}
+	}
+	
+	public static void error(LogCategory category, String msg) {
+		log(category, LogLevel.ERROR, msg);
+	}
+	
+	public static void error(LogCategory category, String format, Object... args) {
+		log(category, LogLevel.ERROR, format, args);
+	}
+	
+	public static void warn(LogCategory category, String msg) {
+		log(category, LogLevel.WARN, msg);
+	}
+	
+	public static void warn(LogCategory category, String format, Object... args) {
+		log(category, LogLevel.WARN, format, args);
+	}
+	
+	public static void info(LogCategory category, String msg) {
+		log(category, LogLevel.INFO, msg);
+	}
+	
+	public static void info(LogCategory category, String format, Object... args) {
+		log(category, LogLevel.INFO, format, args);
+	}
+	
+	public static void debug(LogCategory category, String msg) {
+		log(category, LogLevel.DEBUG, msg);
+	}
+	
+	public static void debug(LogCategory category, String format, Object... args) {
+		log(category, LogLevel.DEBUG, format, args);
+	}
+	
+	public static void trace(LogCategory category, String msg) {
+		log(category, LogLevel.TRACE, msg);
+	}
+	
+	public static void trace(LogCategory category, String format, Object... args) {
+		log(category, LogLevel.TRACE, format, args);
+	}
+	
+	private static void write(String msg) {
+		AsyncLogSink sink = asyncSink;
+		if (sink != null) {
+			sink.write(msg);
+		} else {
+			System.out.println(msg);
+		}
+	}
+	
+	private static LogLevel parseLevel(String name) {
+		try {
+			return LogLevel.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("unknown log level: " + name.trim());
+		}
+	}
+	
+	private static LogLevel[] createLevels(LogLevel level) {
+		LogLevel[] levels = new LogLevel[LogCategory.values().length];
+		Arrays.fill(levels, level);
+		return levels;
+	}
+}
@@ -0,0 +1,37 @@
+package ccjava.logging;
+
+/**
+ * The subsystems whose levels can be set separately. The names are the ones used in Log.configure().
+ */
+public enum LogCategory {
+	PARSER("parser"),
+	DEFINITION_VISITOR("definitionVisitor"),
+	USE_VISITOR("useVisitor"),
+	COMMENT_VISITOR("commentVisitor"),
+	MISSING_TYPE_VISITOR("missingTypeVisitor"),
+	DIFFS("diffs"),
+	RELATED_DIFFS("relatedDiffs"),
+	PARTITIONS("partitions"),
+	BATCH("batch"),
+	DAEMON("daemon"),
+	SCHEDULER("scheduler");
+	
+	private String name;
+	
+	private LogCategory(String name) {
+		this.name = name;
+	}
+	
+	public String getName() {
+		return this.name;
+	}
+	
+	public static LogCategory fromName(String name) {
+		for (LogCategory c : values()) {
+			if (c.name.equals(name)) {
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("unknown log category: " + name);
+	}
+}
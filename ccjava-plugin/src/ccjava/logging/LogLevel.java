@@ -0,0 +1,14 @@
+package ccjava.logging;
+
+/**
+ * Levels in increasing order of detail. A category set to a level logs the messages of that level and of the
+ * levels before it.
+ */
+public enum LogLevel {
+	OFF,
+	ERROR,
+	WARN,
+	INFO,
+	DEBUG,
+	TRACE,
+}
@@ -0,0 +1,120 @@
+package ccjava.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Limits on the time, AST nodes and heap of one analysis. The analysis steps call check() or addAstNodes() at
+ * checkpoints, which throw a BudgetExceededException once a limit is exceeded, so the analysis stops at the next
+ * checkpoint. A limit of 0 (default) means no limit.
+ *
+ * The time limit counts from the creation of the budget. The heap is the heap used by the whole JVM after the last
+ * garbage collection, so it also includes other analyses running at the same time.
+ */
+public class AnalysisBudget {
+	private static final List<MemoryPoolMXBean> HEAP_POOLS = getHeapPools();
+	
+	private long startNanos;
+	private long timeLimitMillis;
+	private long maxAstNodes;
+	private long maxHeap;
+	private AtomicLong astNodes = new AtomicLong();
+	private volatile String exceededReason;
+	
+	public AnalysisBudget() {
+		this.startNanos = System.nanoTime();
+	}
+	
+	public void setTimeLimit(long millis) {
+		Validate.isTrue(millis >= 0);
+		
+		this.timeLimitMillis = millis;
+	}
+	
+	/**
+	 * The maximum number of AST nodes visited to extract definitions and uses, over all the passes of the parser.
+	 */
+	public void setMaxAstNodes(long maxAstNodes) {
+		Validate.isTrue(maxAstNodes >= 0);
+		
+		this.maxAstNodes = maxAstNodes;
+	}
+	
+	/**
+	 * The maximum heap, in bytes, in use after a garbage collection.
+	 */
+	public void setMaxHeap(long maxHeap) {
+		Validate.isTrue(maxHeap >= 0);
+		
+		this.maxHeap = maxHeap;
+	}
+	
+	public long getAstNodes() {
+		return this.astNodes.get();
+	}
+	
+	/**
+	 * Throws a BudgetExceededException if a limit was exceeded.
+	 */
+	public void check() {
+		if (isExceeded()) {
+			throw new BudgetExceededException(this.exceededReason);
+		}
+	}
+	
+	/**
+	 * Counts AST nodes, then does the same as check().
+	 */
+	public void addAstNodes(long count) {
+		this.astNodes.addAndGet(count);
+		check();
+	}
+	
+	/**
+	 * Like check(), but returns whether a limit was exceeded instead of throwing. Once a limit is exceeded, the
+	 * budget stays exceeded.
+	 */
+	public boolean isExceeded() {
+		if (this.exceededReason != null) {
+			return true;
+		}
+		
+		long millis = (System.nanoTime() - this.startNanos) / 1000000;
+		if (this.timeLimitMillis > 0 && millis > this.timeLimitMillis) {
+			this.exceededReason = "time limit of " + this.timeLimitMillis + " ms exceeded";
+		} else if (this.maxAstNodes > 0 && this.astNodes.get() > this.maxAstNodes) {
+			this.exceededReason = "limit of " + this.maxAstNodes + " AST nodes exceeded";
+		} else if (this.maxHeap > 0 && getHeapUsedAfterLastCollection() > this.maxHeap) {
+			this.exceededReason = "heap limit of " + (this.maxHeap >> 20) + " MB exceeded";
+		}
+		return this.exceededReason != null;
+	}
+	
+	private static long getHeapUsedAfterLastCollection() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : HEAP_POOLS) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null) {
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+	
+	private static List<MemoryPoolMXBean> getHeapPools() {
+		List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool);
+			}
+		}
+		return heapPools;
+	}
+}
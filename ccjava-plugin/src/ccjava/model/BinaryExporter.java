@@ -0,0 +1,211 @@
+package ccjava.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import ccjava.model.BinaryResults.Table;
+
+/**
+ * Writes the results of an analysis to a single binary file, with the layout described in BinaryResults.
+ */
+public class BinaryExporter {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private Changeset changeset;
+	private ClusterChanges cc;
+	
+	private Map<String, Integer> stringIndexes;
+	private int[][][] tables;
+	
+	public BinaryExporter(Changeset changeset, ClusterChanges cc) {
+		Validate.notNull(changeset);
+		Validate.notNull(cc);
+		
+		this.changeset = changeset.freeze(); // diff regions can't be added after the analysis starts
+		this.cc = cc;
+	}
+	
+	public void export(Path filePath) throws IOException {
+		Validate.notNull(filePath);
+		
+		this.stringIndexes = new LinkedHashMap<String, Integer>();
+		this.tables = new int[Table.values().length][][];
+		fillDefs();
+		fillUses();
+		fillDiffs();
+		fillDiffRelations();
+		fillPartitions();
+		fillSummary();
+		
+		filePath.toAbsolutePath().getParent().toFile().mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(filePath),
+				BUFFER_SIZE))) {
+			out.write(BinaryResults.MAGIC);
+			out.writeInt(BinaryResults.VERSION);
+			
+			out.writeInt(this.stringIndexes.size());
+			for (String s : this.stringIndexes.keySet()) {
+				byte[] bytes = s.getBytes(BinaryResults.STRING_CHARSET);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			
+			for (int[][] table : this.tables) {
+				out.writeInt(table[0].length);
+				out.writeInt(table.length);
+				for (int[] column : table) {
+					ByteBuffer bytes = ByteBuffer.allocate(column.length * 4);
+					bytes.asIntBuffer().put(column);
+					out.write(bytes.array());
+				}
+			}
+		} finally {
+			this.stringIndexes = null;
+			this.tables = null;
+		}
+	}
+	
+	private void fillDefs() {
+		int[][] t = createTable(Table.DEFS, this.changeset.getDefinitions().size());
+		int row = 0;
+		for (Definition d : this.changeset.getDefinitions()) {
+			int c = 0;
+			t[c++][row] = d.getId();
+			t[c++][row] = getStringIndex(d.getSourceFile().getPath());
+			t[c++][row] = d.getPosition().getFirstCharacterPosition();
+			t[c++][row] = d.getPosition().getLastCharacterPosition();
+			t[c++][row] = getStringIndex(d.getName());
+			t[c++][row] = toInt(d.isTypeDefinition());
+			t[c++][row] = toInt(d.isMethodDefinition());
+			t[c++][row] = toInt(d.isInsideADiffRegion());
+			++row;
+		}
+	}
+	
+	private void fillUses() {
+		int[][] t = createTable(Table.USES, this.changeset.getUses().size());
+		int row = 0;
+		for (Use u : this.changeset.getUses()) {
+			Definition d = u.getAssociatedDefinition();
+			int c = 0;
+			t[c++][row] = u.getId();
+			t[c++][row] = getStringIndex(u.getSourceFile().getPath());
+			t[c++][row] = u.getPosition().getFirstCharacterPosition();
+			t[c++][row] = u.getPosition().getLastCharacterPosition();
+			t[c++][row] = getStringIndex(u.getName());
+			t[c++][row] = d.getId();
+			t[c++][row] = getStringIndex(d.getSourceFile().getPath());
+			t[c++][row] = d.getPosition().getFirstCharacterPosition();
+			t[c++][row] = d.getPosition().getLastCharacterPosition();
+			t[c++][row] = toInt(u.isInsideADiffRegion());
+			++row;
+		}
+	}
+	
+	private void fillDiffs() {
+		int[][] t = createTable(Table.DIFFS, this.changeset.getDiffRegions().size());
+		int row = 0;
+		for (DiffRegion dr : this.changeset.getDiffRegions()) {
+			int c = 0;
+			t[c++][row] = dr.getId();
+			t[c++][row] = getStringIndex(dr.getSourceFile().getPath());
+			t[c++][row] = dr.getLineSpan().getFirstLineNumber();
+			t[c++][row] = dr.getLineSpan().getLastLineNumber();
+			t[c++][row] = dr.getCharacterSpan().getFirstCharacterPosition();
+			t[c++][row] = dr.getCharacterSpan().getLastCharacterPosition();
+			++row;
+		}
+	}
+	
+	private void fillDiffRelations() {
+		int[][] t = createTable(Table.DIFF_RELATIONS, this.cc.getRelatedDiffs().size());
+		int row = 0;
+		for (RelatedDiffPair rdp : this.cc.getRelatedDiffs()) {
+			DiffRegion dr1 = rdp.getFirstDiffRegion();
+			DiffRegion dr2 = rdp.getSecondDiffRegion();
+			int c = 0;
+			t[c++][row] = rdp.getId();
+			t[c++][row] = rdp.getRelationType().ordinal();
+			t[c++][row] = dr1.getId();
+			t[c++][row] = getStringIndex(dr1.getSourceFile().getPath());
+			t[c++][row] = dr1.getLineSpan().getFirstLineNumber();
+			t[c++][row] = dr1.getLineSpan().getLastLineNumber();
+			t[c++][row] = dr2.getId();
+			t[c++][row] = getStringIndex(dr2.getSourceFile().getPath());
+			t[c++][row] = dr2.getLineSpan().getFirstLineNumber();
+			t[c++][row] = dr2.getLineSpan().getLastLineNumber();
+			++row;
+		}
+	}
+	
+	private void fillPartitions() {
+		int rows = 0;
+		for (Partition p : this.cc.getPartitions()) {
+			rows += p.getDiffRegions().size();
+		}
+		
+		int[][] t = createTable(Table.PARTITIONS, rows);
+		int row = 0;
+		for (Partition p : this.cc.getPartitions()) {
+			for (DiffRegion dr : p.getDiffRegions()) {
+				int c = 0;
+				t[c++][row] = p.getId();
+				t[c++][row] = toInt(p.isTrivial());
+				t[c++][row] = dr.getId();
+				t[c++][row] = getStringIndex(dr.getSourceFile().getPath());
+				t[c++][row] = dr.getLineSpan().getFirstLineNumber();
+				t[c++][row] = dr.getLineSpan().getLastLineNumber();
+				t[c++][row] = dr.getCharacterSpan().getFirstCharacterPosition();
+				t[c++][row] = dr.getCharacterSpan().getLastCharacterPosition();
+				t[c++][row] = dr.getEnclosingMethod() != null ? dr.getEnclosingMethod().getId() : 0;
+				++row;
+			}
+		}
+	}
+	
+	private void fillSummary() {
+		int trivialPartitions = 0;
+		for (Partition p : this.cc.getPartitions()) {
+			if (p.isTrivial()) {
+				++trivialPartitions;
+			}
+		}
+		
+		int[][] t = createTable(Table.SUMMARY, 1);
+		int c = 0;
+		t[c++][0] = this.changeset.getSourceFiles().size();
+		t[c++][0] = this.changeset.getDefinitions().size();
+		t[c++][0] = this.changeset.getUses().size();
+		t[c++][0] = this.changeset.getDiffRegions().size();
+		t[c++][0] = this.cc.getPartitions().size();
+		t[c++][0] = this.cc.getPartitions().size() - trivialPartitions;
+		t[c++][0] = trivialPartitions;
+	}
+	
+	private int[][] createTable(Table table, int rows) {
+		int[][] t = new int[table.getColumns().size()][rows];
+		this.tables[table.ordinal()] = t;
+		return t;
+	}
+	
+	private int getStringIndex(String s) {
+		Integer index = this.stringIndexes.get(s);
+		if (index == null) {
+			index = this.stringIndexes.size();
+			this.stringIndexes.put(s, index);
+		}
+		return index;
+	}
+	
+	private static int toInt(boolean b) {
+		return b ? 1 : 0;
+	}
+}
@@ -0,0 +1,139 @@
+package ccjava.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The results of an analysis read from the file written by BinaryExporter.
+ *
+ * The file has the same tables and columns as the CSV files, stored by column. All values are big-endian 32-bit
+ * ints: strings are indexes into a dictionary of the distinct strings, booleans are 0 or 1, relation types are the
+ * ordinals of RelatedDiffPair.DiffRelationType and a missing enclosing method is 0. The layout is:
+ *
+ * - magic "CCJB" (4 bytes) and format version
+ * - number of strings, then for each string its length in bytes and its UTF-8 bytes
+ * - for each table in the order of Table: number of rows, number of columns, then each column's values
+ */
+public class BinaryResults {
+	public static final byte[] MAGIC = { 'C', 'C', 'J', 'B' };
+	public static final int VERSION = 1;
+	static final Charset STRING_CHARSET = Charset.forName("UTF-8");
+	
+	public enum Table {
+		DEFS("defId,sourceFile,characterSpanStart,characterSpanEnd,name,isTypeDef,isMethodDef,isInsideADiff"),
+		USES("useId,sourceFile,characterSpanStart,characterSpanEnd,name,associatedDefId,associatedDefSourceFile,"
+				+ "associatedDefCharacterSpanStart,associatedDefCharacterSpanEnd,isInsideADiff"),
+		DIFFS("diffId,sourceFile,lineSpanStart,lineSpanEnd,characterSpanStart,characterSpanEnd"),
+		DIFF_RELATIONS("relationId,relationType,diffId1,sourceFile1,lineSpanStart1,lineSpanEnd1,diffId2,sourceFile2,"
+				+ "lineSpanStart2,lineSpanEnd2"),
+		PARTITIONS("partitionId,isTrivial,diffId,diffSourceFile,diffLineSpanStart,diffLineSpanEnd,"
+				+ "diffCharacterSpanStart,diffCharacterSpanEnd,enclosingMethodDefId"),
+		SUMMARY("sourceFiles,defs,uses,diffs,totalPartitions,nonTrivialPartitions,trivialPartitions");
+		
+		private List<String> columns;
+		
+		private Table(String columns) {
+			this.columns = Arrays.asList(columns.split(","));
+		}
+		
+		public List<String> getColumns() {
+			return this.columns;
+		}
+		
+		public int getColumnIndex(String column) {
+			int i = this.columns.indexOf(column);
+			Validate.isTrue(i >= 0, "no column %s in %s", column, this);
+			return i;
+		}
+	}
+	
+	private String[] strings;
+	private int[][][] tables; // table, column, row
+	
+	private BinaryResults(String[] strings, int[][][] tables) {
+		this.strings = strings;
+		this.tables = tables;
+	}
+	
+	public static BinaryResults read(Path filePath) throws IOException {
+		Validate.notNull(filePath);
+		
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(filePath));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("not a binary results file: " + filePath);
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(String.format("unsupported binary results version %d: %s", version, filePath));
+			}
+			
+			String[] strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; ++i) {
+				int length = buffer.getInt();
+				strings[i] = new String(buffer.array(), buffer.position(), length, STRING_CHARSET);
+				buffer.position(buffer.position() + length);
+			}
+			
+			int[][][] tables = new int[Table.values().length][][];
+			for (Table t : Table.values()) {
+				int rows = buffer.getInt();
+				int columns = buffer.getInt();
+				if (columns != t.getColumns().size()) {
+					throw new IOException(String.format("%s has %d columns instead of %d: %s", t, columns,
+							t.getColumns().size(), filePath));
+				}
+				
+				tables[t.ordinal()] = new int[columns][rows];
+				for (int[] column : tables[t.ordinal()]) {
+					buffer.asIntBuffer().get(column);
+					buffer.position(buffer.position() + rows * 4);
+				}
+			}
+			
+			return new BinaryResults(strings, tables);
+		} catch (RuntimeException e) { // BufferUnderflowException, IllegalArgumentException, ...
+			throw new IOException("corrupted binary results file: " + filePath, e);
+		}
+	}
+	
+	public int getRowCount(Table table) {
+		return this.tables[table.ordinal()][0].length;
+	}
+	
+	/**
+	 * Returns the values of a column. The array is shared, so it must not be modified.
+	 */
+	public int[] getColumn(Table table, String column) {
+		return this.tables[table.ordinal()][table.getColumnIndex(column)];
+	}
+	
+	public int getInt(Table table, String column, int row) {
+		return getColumn(table, column)[row];
+	}
+	
+	public boolean getBoolean(Table table, String column, int row) {
+		return getInt(table, column, row) != 0;
+	}
+	
+	public String getString(Table table, String column, int row) {
+		return getString(getInt(table, column, row));
+	}
+	
+	public String getString(int index) {
+		return this.strings[index];
+	}
+	
+	public int getNumberOfStrings() {
+		return this.strings.length;
+	}
+}
@@ -0,0 +1,136 @@
+package ccjava.model;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Maps normalized binding keys to the definitions of a changeset. The index is built once, after all definitions 
+ * are extracted, and shared by everything that needs to find the definition associated with a binding. It is safe 
+ * to use from several threads, including while definitions are registered.
+ * 
+ * Definitions are stored in an array indexed by the ids of a binding key table. Definitions from the same table are
+ * registered by id, and the others by key.
+ * 
+ * If more than one definition has the same binding key, the first one registered is kept.
+ */
+public class BindingKeyIndex {
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private BindingKeyTable bindingKeyTable;
+	private volatile AtomicReferenceArray<Definition> definitions;
+	private int size; // guarded by this
+	
+	public BindingKeyIndex() {
+		this(new BindingKeyTable());
+	}
+	
+	public BindingKeyIndex(BindingKeyTable bindingKeyTable) {
+		Validate.notNull(bindingKeyTable);
+		
+		this.bindingKeyTable = bindingKeyTable;
+		this.definitions = new AtomicReferenceArray<Definition>(INITIAL_CAPACITY);
+		this.size = 0;
+	}
+	
+	public BindingKeyIndex(Collection<Definition> definitions) {
+		this();
+		
+		register(definitions);
+	}
+	
+	public BindingKeyIndex(BindingKeyTable bindingKeyTable, Collection<Definition> definitions) {
+		this(bindingKeyTable);
+		
+		register(definitions);
+	}
+	
+	public BindingKeyTable getBindingKeyTable() {
+		return this.bindingKeyTable;
+	}
+	
+	public void register(Collection<Definition> definitions) {
+		Validate.notNull(definitions);
+		
+		for (Definition d : definitions) {
+			register(d);
+		}
+	}
+	
+	/**
+	 * Returns false if another definition with the same binding key was already registered.
+	 */
+	public synchronized boolean register(Definition definition) {
+		Validate.notNull(definition);
+		
+		int id = getBindingKeyId(definition);
+		ensureCapacity(id + 1);
+		
+		Definition previous = this.definitions.get(id);
+		if (previous == null) {
+			this.definitions.set(id, definition);
+			++this.size;
+			return true;
+		}
+		return previous == definition;
+	}
+	
+	/**
+	 * Removes the definition, if it is the one registered for its binding key.
+	 */
+	public synchronized boolean unregister(Definition definition) {
+		Validate.notNull(definition);
+		
+		int id = getBindingKeyId(definition);
+		if (id < this.definitions.length() && this.definitions.get(id) == definition) {
+			this.definitions.set(id, null);
+			--this.size;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the definition with the given normalized binding key, or null if there is none.
+	 */
+	public Definition lookup(String bindingKey) {
+		Validate.notNull(bindingKey);
+		
+		int id = this.bindingKeyTable.lookupId(bindingKey);
+		return id != BindingKeyTable.NO_ID ? lookup(id) : null;
+	}
+	
+	/**
+	 * Returns the definition whose binding key has the given id in getBindingKeyTable(), or null if there is none.
+	 */
+	public Definition lookup(int bindingKeyId) {
+		AtomicReferenceArray<Definition> currentDefinitions = this.definitions;
+		return bindingKeyId >= 0 && bindingKeyId < currentDefinitions.length() 
+				? currentDefinitions.get(bindingKeyId) 
+				: null;
+	}
+	
+	public synchronized int size() {
+		return this.size;
+	}
+	
+	private int getBindingKeyId(Definition definition) {
+		return definition.getBindingKeyTable() == this.bindingKeyTable 
+				? definition.getBindingKeyId()
+				: this.bindingKeyTable.getId(definition.getBindingKey());
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity <= this.definitions.length()) {
+			return;
+		}
+		
+		int newCapacity = Math.max(capacity, this.definitions.length() * 2);
+		AtomicReferenceArray<Definition> newDefinitions = new AtomicReferenceArray<Definition>(newCapacity);
+		for (int i = 0; i < this.definitions.length(); ++i) {
+			newDefinitions.set(i, this.definitions.get(i));
+		}
+		this.definitions = newDefinitions;
+	}
+}
@@ -0,0 +1,75 @@
+package ccjava.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Symbol table assigning dense int ids to normalized binding keys, starting at 0. Each distinct key is stored only
+ * once, and definitions and uses refer to it by id, so matching them is an int comparison. Ids are only meaningful
+ * inside the table that assigned them, which should be shared by everything in the same analysis. Instances are
+ * thread-safe.
+ */
+public class BindingKeyTable {
+	public static final int NO_ID = -1;
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private ConcurrentMap<String, Integer> ids;
+	private volatile String[] keys;
+	private int size; // guarded by this
+	
+	public BindingKeyTable() {
+		this.ids = new ConcurrentHashMap<String, Integer>();
+		this.keys = new String[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+	
+	/**
+	 * Returns the id of the key, assigning a new one if the key is not in the table yet.
+	 */
+	public int getId(String bindingKey) {
+		Validate.notBlank(bindingKey);
+		
+		Integer id = this.ids.get(bindingKey);
+		if (id != null) {
+			return id;
+		}
+		
+		synchronized (this) {
+			id = this.ids.get(bindingKey);
+			if (id != null) {
+				return id;
+			}
+			
+			if (this.size == this.keys.length) {
+				this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+			}
+			this.keys[this.size] = bindingKey;
+			this.ids.put(bindingKey, this.size); // published after the key is stored
+			return this.size++;
+		}
+	}
+	
+	/**
+	 * Returns the id of the key, or NO_ID if it is not in the table.
+	 */
+	public int lookupId(String bindingKey) {
+		Validate.notNull(bindingKey);
+		
+		Integer id = this.ids.get(bindingKey);
+		return id != null ? id : NO_ID;
+	}
+	
+	public String getKey(int id) {
+		String[] currentKeys = this.keys;
+		Validate.isTrue(id >= 0 && id < currentKeys.length && currentKeys[id] != null, "unknown binding key id: %d", id);
+		
+		return currentKeys[id];
+	}
+	
+	public int size() {
+		return this.ids.size();
+	}
+}
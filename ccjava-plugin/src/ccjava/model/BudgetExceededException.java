@@ -0,0 +1,12 @@
+package ccjava.model;
+
+/**
+ * Thrown at a checkpoint of an analysis whose AnalysisBudget was exceeded.
+ */
+public class BudgetExceededException extends RuntimeException {
+	private static final long serialVersionUID = -3914026537290465371L;
+	
+	public BudgetExceededException(String reason) {
+		super("Analysis budget exceeded: " + reason);
+	}
+}
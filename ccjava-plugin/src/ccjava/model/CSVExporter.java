@@ -1,14 +1,9 @@
 package ccjava.model;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 public class CSVExporter {
@@ -36,7 +31,7 @@ public class CSVExporter {
 		Validate.notNull(changeset);
 		Validate.notNull(cc);
 		
-		this.changeset = changeset;
+		this.changeset = changeset.freeze(); // diff regions can't be added after the analysis starts
 		this.cc = cc;
 	}
 	
@@ -54,125 +49,117 @@ public class CSVExporter {
 	private void exportDefs(Path outputDir) throws IOException {
 		String header = "defId,sourceFile,characterSpanStart,characterSpanEnd,name,isTypeDef,isMethodDef,isInsideADiff";
 		
-		List<String> rows = new ArrayList<String>(); 
-		for (Definition d : this.changeset.getDefinitions()) {
-			rows.add(getCSVString(new Object[] {
-					d.getId(),
-					d.getSourceFile(),		
-					d.getPosition().getFirstCharacterPosition(),
-					d.getPosition().getLastCharacterPosition(),
-					d.getName(),
-					Boolean.valueOf(d.isTypeDefinition()).toString(),
-					Boolean.valueOf(d.isMethodDefinition()).toString(),
-					Boolean.valueOf(d.isInsideADiffRegion()).toString()
-					}));
+		try (CSVWriter csv = createCSVFile(outputDir.resolve(DEFINITIONS_FILENAME), header)) {
+			for (Definition d : this.changeset.getDefinitions()) {
+				csv.write(d.getId())
+						.write(d.getSourceFile())
+						.write(d.getPosition().getFirstCharacterPosition())
+						.write(d.getPosition().getLastCharacterPosition())
+						.write(d.getName())
+						.write(d.isTypeDefinition())
+						.write(d.isMethodDefinition())
+						.write(d.isInsideADiffRegion())
+						.endRow();
+			}
 		}
-		
-		createCSVFile(outputDir.resolve(DEFINITIONS_FILENAME), header, rows);
 	}
 	
 	private void exportUses(Path outputDir) throws IOException {
 		String header = "useId,sourceFile,characterSpanStart,characterSpanEnd,name,associatedDefId,associatedDefSourceFile,associatedDefCharacterSpanStart,associatedDefCharacterSpanEnd,isInsideADiff";
 		
-		List<String> rows = new ArrayList<String>(); 
-		for (Use u : this.changeset.getUses()) {
-			rows.add(getCSVString(new Object[] {
-					u.getId(),
-					u.getSourceFile(),
-					u.getPosition().getFirstCharacterPosition(),
-					u.getPosition().getLastCharacterPosition(),
-					u.getName(),
-					u.getAssociatedDefinition().getId(),
-					u.getAssociatedDefinition().getSourceFile(),
-					u.getAssociatedDefinition().getPosition().getFirstCharacterPosition(),
-					u.getAssociatedDefinition().getPosition().getLastCharacterPosition(),
-					Boolean.valueOf(u.isInsideADiffRegion()).toString()
-					}));
+		try (CSVWriter csv = createCSVFile(outputDir.resolve(USES_FILENAME), header)) {
+			for (Use u : this.changeset.getUses()) {
+				csv.write(u.getId())
+						.write(u.getSourceFile())
+						.write(u.getPosition().getFirstCharacterPosition())
+						.write(u.getPosition().getLastCharacterPosition())
+						.write(u.getName())
+						.write(u.getAssociatedDefinition().getId())
+						.write(u.getAssociatedDefinition().getSourceFile())
+						.write(u.getAssociatedDefinition().getPosition().getFirstCharacterPosition())
+						.write(u.getAssociatedDefinition().getPosition().getLastCharacterPosition())
+						.write(u.isInsideADiffRegion())
+						.endRow();
+			}
 		}
-		
-		createCSVFile(outputDir.resolve(USES_FILENAME), header, rows);
 	}
 	
 	private void exportDiffs(Path outputDir) throws IOException {
 		String header = "diffId,sourceFile,lineSpanStart,lineSpanEnd,characterSpanStart,characterSpanEnd";
 		
-		List<String> rows = new ArrayList<String>(); 
-		for (DiffRegion dr : this.changeset.getDiffRegions()) {
-			rows.add(getCSVString(new Object[] {
-					dr.getId(),
-					dr.getSourceFile(),
-					dr.getLineSpan().getFirstLineNumber(),
-					dr.getLineSpan().getLastLineNumber(),
-					dr.getCharacterSpan().getFirstCharacterPosition(),
-					dr.getCharacterSpan().getLastCharacterPosition(),
-					}));
+		try (CSVWriter csv = createCSVFile(outputDir.resolve(DIFFS_FILENAME), header)) {
+			for (DiffRegion dr : this.changeset.getDiffRegions()) {
+				csv.write(dr.getId())
+						.write(dr.getSourceFile())
+						.write(dr.getLineSpan().getFirstLineNumber())
+						.write(dr.getLineSpan().getLastLineNumber())
+						.write(dr.getCharacterSpan().getFirstCharacterPosition())
+						.write(dr.getCharacterSpan().getLastCharacterPosition())
+						.endRow();
+			}
 		}
-		
-		createCSVFile(outputDir.resolve(DIFFS_FILENAME), header, rows);
 	}
 	
 	private void exportDiffRelations(Path outputDir) throws IOException {
 		String header = "relationId,relationType,diffId1,sourceFile1,lineSpanStart1,lineSpanEnd1,diffId2,sourceFile2,lineSpanStart2,lineSpanEnd2";
 		
-		List<String> rows = new ArrayList<String>(); 
-		for (RelatedDiffPair rdp : this.cc.getRelatedDiffs()) {
-			rows.add(getCSVString(new Object[] {
-					rdp.getId(),
-					rdp.getRelationType(),
-					rdp.getFirstDiffRegion().getId(),
-					rdp.getFirstDiffRegion().getSourceFile(),
-					rdp.getFirstDiffRegion().getLineSpan().getFirstLineNumber(),
-					rdp.getFirstDiffRegion().getLineSpan().getLastLineNumber(),
-					rdp.getSecondDiffRegion().getId(),
-					rdp.getSecondDiffRegion().getSourceFile(),
-					rdp.getSecondDiffRegion().getLineSpan().getFirstLineNumber(),
-					rdp.getSecondDiffRegion().getLineSpan().getLastLineNumber(),
-					}));
+		try (CSVWriter csv = createCSVFile(outputDir.resolve(DIFF_RELATIONS_FILENAME), header)) {
+			for (RelatedDiffPair rdp : this.cc.getRelatedDiffs()) {
+				csv.write(rdp.getId())
+						.write(rdp.getRelationType())
+						.write(rdp.getFirstDiffRegion().getId())
+						.write(rdp.getFirstDiffRegion().getSourceFile())
+						.write(rdp.getFirstDiffRegion().getLineSpan().getFirstLineNumber())
+						.write(rdp.getFirstDiffRegion().getLineSpan().getLastLineNumber())
+						.write(rdp.getSecondDiffRegion().getId())
+						.write(rdp.getSecondDiffRegion().getSourceFile())
+						.write(rdp.getSecondDiffRegion().getLineSpan().getFirstLineNumber())
+						.write(rdp.getSecondDiffRegion().getLineSpan().getLastLineNumber())
+						.endRow();
+			}
 		}
-		
-		createCSVFile(outputDir.resolve(DIFF_RELATIONS_FILENAME), header, rows);
 	}
 	
 	private void exportPartitions(Path outputDir) throws IOException {
 		String header = "partitionId,isTrivial,diffId,diffSourceFile,diffLineSpanStart,diffLineSpanEnd,diffCharacterSpanStart,diffCharacterSpanEnd,enclosingMethodDefId";
 		
-		List<String> rows = new ArrayList<String>(); 
-		for (Partition p : this.cc.getPartitions()) {
-			for (DiffRegion dr : p.getDiffRegions()) {
-				rows.add(getCSVString(new Object[] {
-						p.getId(),
-						Boolean.valueOf(p.isTrivial()).toString(),
-						dr.getId(),
-						dr.getSourceFile(),
-						dr.getLineSpan().getFirstLineNumber(),
-						dr.getLineSpan().getLastLineNumber(),
-						dr.getCharacterSpan().getFirstCharacterPosition(),
-						dr.getCharacterSpan().getLastCharacterPosition(),
-						dr.getEnclosingMethod() != null ? dr.getEnclosingMethod().getId() : "null",
-						}));
+		try (CSVWriter csv = createCSVFile(outputDir.resolve(PARTITIONS_FILENAME), header)) {
+			for (Partition p : this.cc.getPartitions()) {
+				for (DiffRegion dr : p.getDiffRegions()) {
+					csv.write(p.getId())
+							.write(p.isTrivial())
+							.write(dr.getId())
+							.write(dr.getSourceFile())
+							.write(dr.getLineSpan().getFirstLineNumber())
+							.write(dr.getLineSpan().getLastLineNumber())
+							.write(dr.getCharacterSpan().getFirstCharacterPosition())
+							.write(dr.getCharacterSpan().getLastCharacterPosition());
+					if (dr.getEnclosingMethod() != null) {
+						csv.write(dr.getEnclosingMethod().getId());
+					} else {
+						csv.write("null");
+					}
+					csv.endRow();
+				}
 			}
 		}
-		
-		createCSVFile(outputDir.resolve(PARTITIONS_FILENAME), header, rows);
 	}
 	
 	private void exportSummary(Path outputDir) throws IOException {
 		String header = "sourceFiles,defs,uses,diffs,totalPartitions,nonTrivialPartitions,trivialPartitions";
 		
 		Summary s = getSummary();
-
-		List<String> rows = new ArrayList<String>();
-		rows.add(getCSVString(new Object[] {
-				s.sourceFiles,
-				s.defs,
-				s.uses,
-				s.diffs,
-				s.totalPartitions,
-				s.nonTrivialPartitions,
-				s.trivialPartitions
-				}));
 		
-		createCSVFile(outputDir.resolve(SUMMARY_FILENAME), header, rows);
+		try (CSVWriter csv = createCSVFile(outputDir.resolve(SUMMARY_FILENAME), header)) {
+			csv.write(s.sourceFiles)
+					.write(s.defs)
+					.write(s.uses)
+					.write(s.diffs)
+					.write(s.totalPartitions)
+					.write(s.nonTrivialPartitions)
+					.write(s.trivialPartitions)
+					.endRow();
+		}
 	}
 	
 	private Summary getSummary() {
@@ -196,25 +183,16 @@ public class CSVExporter {
 		return s;
 	}
 	
-	private void createCSVFile(Path filePath, String header, List<String> rows) throws IOException {
+	private CSVWriter createCSVFile(Path filePath, String header) throws IOException {
 		filePath.getParent().toFile().mkdirs();
 		
-		try (BufferedWriter fout = new BufferedWriter(new FileWriter(filePath.toFile()))) {
-			fout.write(header);
-			fout.newLine();
-			for (String row : rows) {
-				fout.write(row);
-				fout.newLine();
-			}
-		} 
-	}
-
-	private String getCSVString(Object[] fields) {
-		Validate.notNull(fields);
-		
-		String fmtStr = StringUtils.repeat("%s,", fields.length);
-		fmtStr = fmtStr.substring(0, fmtStr.length() - 1); // removes extra comma at the end
-		
-		return String.format(fmtStr, fields);
+		CSVWriter csv = new CSVWriter(filePath);
+		try {
+			csv.writeHeader(header);
+		} catch (IOException e) {
+			csv.close();
+			throw e;
+		}
+		return csv;
 	}
 }
@@ -0,0 +1,127 @@
+package ccjava.model;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Writes a CSV file one field at a time, so rows are never built as strings. Fields containing commas, quotes or
+ * line breaks are quoted, with their quotes doubled. Rows end with the platform line separator.
+ */
+public class CSVWriter implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+	
+	private Writer out;
+	private String lineSeparator;
+	private boolean rowStarted;
+	private char[] digits = new char[11]; // enough for Integer.MIN_VALUE
+	
+	public CSVWriter(Path filePath) throws IOException {
+		Validate.notNull(filePath);
+		
+		this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(filePath)), BUFFER_SIZE);
+		this.lineSeparator = System.lineSeparator();
+	}
+	
+	/**
+	 * Writes a row of comma-separated names as is.
+	 */
+	public CSVWriter writeHeader(String header) throws IOException {
+		Validate.validState(!this.rowStarted, "row not ended");
+		
+		this.out.write(header);
+		return endRow();
+	}
+	
+	public CSVWriter write(String field) throws IOException {
+		startField();
+		if (needsQuotes(field)) {
+			writeQuoted(field);
+		} else {
+			this.out.write(field);
+		}
+		return this;
+	}
+	
+	public CSVWriter write(Object field) throws IOException {
+		return write(String.valueOf(field));
+	}
+	
+	public CSVWriter write(boolean field) throws IOException {
+		startField();
+		this.out.write(field ? "true" : "false");
+		return this;
+	}
+	
+	public CSVWriter write(int field) throws IOException {
+		startField();
+		
+		// Digits are written from the end of the buffer, without creating a string.
+		int start = this.digits.length;
+		long value = Math.abs((long) field);
+		do {
+			this.digits[--start] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		if (field < 0) {
+			this.digits[--start] = '-';
+		}
+		this.out.write(this.digits, start, this.digits.length - start);
+		
+		return this;
+	}
+	
+	public CSVWriter endRow() throws IOException {
+		this.out.write(this.lineSeparator);
+		this.rowStarted = false;
+		return this;
+	}
+	
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.out.close();
+	}
+	
+	private void startField() throws IOException {
+		if (this.rowStarted) {
+			this.out.write(SEPARATOR);
+		}
+		this.rowStarted = true;
+	}
+	
+	private boolean needsQuotes(String field) {
+		for (int i = 0; i < field.length(); ++i) {
+			char c = field.charAt(i);
+			if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void writeQuoted(String field) throws IOException {
+		this.out.write(QUOTE);
+		int start = 0;
+		for (int i = 0; i < field.length(); ++i) {
+			if (field.charAt(i) == QUOTE) {
+				this.out.write(field, start, i + 1 - start);
+				this.out.write(QUOTE);
+				start = i + 1;
+			}
+		}
+		this.out.write(field, start, field.length() - start);
+		this.out.write(QUOTE);
+	}
+}
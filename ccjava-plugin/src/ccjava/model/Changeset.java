@@ -1,8 +1,10 @@
 package ccjava.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,13 +13,64 @@ import org.apache.commons.lang3.Validate;
 
 import ccjava.diffparser.UnifiedDiffRegion;
 
+/**
+ * The source files of a changeset and their diff regions. Collections over all source files follow the order of the 
+ * source file paths, then the positions inside each source file.
+ * 
+ * After freeze(), no more diff regions can be added and these collections are built once and shared by all callers.
+ * freeze() also assigns the ids of the definitions, uses and diff regions following the same order, so the ids of 
+ * a changeset don't depend on other changesets analyzed in the same process.
+ */
 public class Changeset {
+	private static final Comparator<SourceFile> SOURCE_FILE_PATH_COMPARATOR = new Comparator<SourceFile>() {
+		@Override
+		public int compare(SourceFile sf1, SourceFile sf2) {
+			return sf1.getPath().compareTo(sf2.getPath());
+		}
+	};
+	
+	// Outer elements come before the elements they contain.
+	private static final Comparator<Positioned> POSITION_COMPARATOR = new Comparator<Positioned>() {
+		@Override
+		public int compare(Positioned p1, Positioned p2) {
+			return compareCharacterIntervals(p1.getPosition(), p2.getPosition());
+		}
+	};
+	
+	private static final Comparator<DiffRegion> DIFF_REGION_POSITION_COMPARATOR = new Comparator<DiffRegion>() {
+		@Override
+		public int compare(DiffRegion dr1, DiffRegion dr2) {
+			return compareCharacterIntervals(dr1.getCharacterSpan(), dr2.getCharacterSpan());
+		}
+	};
+	
 	private Map<String, SourceFile> sourceFiles;
+	private BindingKeyIndex bindingKeyIndex;
+	
+	private volatile boolean frozen;
+	private List<SourceFile> frozenSourceFiles;
+	private Set<DiffRegion> frozenDiffRegions;
+	private Set<Definition> frozenDefinitions;
+	private Set<Use> frozenUses;
 
 	public Changeset(Map<String, SourceFile> sourceFiles) {
+		this(sourceFiles, null);
+	}
+	
+	/**
+	 * If bindingKeyIndex is null, it is built from the definitions of the source files.
+	 */
+	public Changeset(Map<String, SourceFile> sourceFiles, BindingKeyIndex bindingKeyIndex) {
 		Validate.notNull(sourceFiles);
 		
 		this.sourceFiles = sourceFiles;
+		this.bindingKeyIndex = bindingKeyIndex;
+		if (this.bindingKeyIndex == null) {
+			this.bindingKeyIndex = new BindingKeyIndex();
+			for (SourceFile sf : sourceFiles.values()) {
+				this.bindingKeyIndex.register(sf.getDefinitions());
+			}
+		}
 	}
 	
 	public boolean isEmpty() {
@@ -25,9 +78,19 @@ public class Changeset {
 	}
 	
 	public void addDiffRegions(List<UnifiedDiffRegion> udrList) {
+		addDiffRegions(udrList, new AnalysisBudget());
+	}
+	
+	/**
+	 * The budget is checked before converting each unified diff region.
+	 */
+	public void addDiffRegions(List<UnifiedDiffRegion> udrList, AnalysisBudget budget) {
 		Validate.notNull(udrList);
+		Validate.notNull(budget);
+		Validate.validState(!this.frozen, "changeset is frozen");
 		
 		for (UnifiedDiffRegion udr : udrList) {
+			budget.check();
 			SourceFile sf = getSourceFile(udr.getPath());
 			if (sf != null) { // if the whole file was deleted, there might be a .patch file without a matching sourcefile
 				sf.addDiffRegion(udr);
@@ -35,14 +98,28 @@ public class Changeset {
 		}
 	}
 	
-	public Set<DiffRegion> getDiffRegions() {
-		Set<DiffRegion> drs = new HashSet<DiffRegion>();
-		for (SourceFile sf : getSourceFiles()) {
-			for (DiffRegion d : sf.getDiffRegions()) {
-				drs.add(d);
-			}
+	/**
+	 * Makes the changeset immutable, computes the collections over all source files and assigns ids. Calling it 
+	 * again has no effect.
+	 */
+	public synchronized Changeset freeze() {
+		if (!this.frozen) {
+			this.frozenSourceFiles = Collections.unmodifiableList(getSortedSourceFiles());
+			this.frozenDiffRegions = Collections.unmodifiableSet(collectDiffRegions());
+			this.frozenDefinitions = Collections.unmodifiableSet(collectDefinitions());
+			this.frozenUses = Collections.unmodifiableSet(collectUses());
+			assignIds();
+			this.frozen = true;
 		}
-		return drs;
+		return this;
+	}
+	
+	public boolean isFrozen() {
+		return this.frozen;
+	}
+	
+	public Set<DiffRegion> getDiffRegions() {
+		return this.frozen ? this.frozenDiffRegions : collectDiffRegions();
 	}
 	
 	public SourceFile getSourceFile(String s) {
@@ -52,26 +129,80 @@ public class Changeset {
 	}
 	
 	public Collection<SourceFile> getSourceFiles() {
-		return Collections.unmodifiableCollection(this.sourceFiles.values());
+		return this.frozen ? this.frozenSourceFiles : Collections.unmodifiableList(getSortedSourceFiles());
+	}
+	
+	public BindingKeyIndex getBindingKeyIndex() {
+		return this.bindingKeyIndex;
 	}
 	
 	public Set<Definition> getDefinitions() {
-		Set<Definition> defs = new HashSet<Definition>();
-		for (SourceFile sf : getSourceFiles()) {
-			for (Definition d : sf.getDefinitions()) {
-				defs.add(d);
-			}
+		return this.frozen ? this.frozenDefinitions : collectDefinitions();
+	}
+	
+	public Set<Use> getUses() {
+		return this.frozen ? this.frozenUses : collectUses();
+	}
+	
+	private List<SourceFile> getSortedSourceFiles() {
+		List<SourceFile> sfs = new ArrayList<SourceFile>(this.sourceFiles.values());
+		Collections.sort(sfs, SOURCE_FILE_PATH_COMPARATOR);
+		return sfs;
+	}
+	
+	private Set<DiffRegion> collectDiffRegions() {
+		Set<DiffRegion> drs = new LinkedHashSet<DiffRegion>();
+		for (SourceFile sf : getSortedSourceFiles()) {
+			List<DiffRegion> sfDiffRegions = new ArrayList<DiffRegion>(sf.getDiffRegions());
+			Collections.sort(sfDiffRegions, DIFF_REGION_POSITION_COMPARATOR);
+			drs.addAll(sfDiffRegions);
+		}
+		return drs;
+	}
+	
+	private Set<Definition> collectDefinitions() {
+		Set<Definition> defs = new LinkedHashSet<Definition>();
+		for (SourceFile sf : getSortedSourceFiles()) {
+			defs.addAll(sortByPosition(sf.getDefinitions()));
 		}
 		return defs;
 	}
 	
-	public Set<Use> getUses() {
-		Set<Use> uses = new HashSet<Use>();
-		for (SourceFile sf : getSourceFiles()) {
-			for (Use u : sf.getUses()) {
-				uses.add(u);
-			}
+	private Set<Use> collectUses() {
+		Set<Use> uses = new LinkedHashSet<Use>();
+		for (SourceFile sf : getSortedSourceFiles()) {
+			uses.addAll(sortByPosition(sf.getUses()));
 		}
 		return uses;
 	}
+	
+	private void assignIds() {
+		int id = 1;
+		for (DiffRegion dr : this.frozenDiffRegions) {
+			dr.setId(id++);
+		}
+		
+		id = 1;
+		for (Definition d : this.frozenDefinitions) {
+			d.setId(id++);
+		}
+		
+		id = 1;
+		for (Use u : this.frozenUses) {
+			u.setId(id++);
+		}
+	}
+	
+	private static <T extends Positioned> List<T> sortByPosition(Collection<T> elements) {
+		List<T> sortedElements = new ArrayList<T>(elements);
+		Collections.sort(sortedElements, POSITION_COMPARATOR);
+		return sortedElements;
+	}
+	
+	private static int compareCharacterIntervals(CharacterInterval ci1, CharacterInterval ci2) {
+		if (ci1.getFirstCharacterPosition() != ci2.getFirstCharacterPosition()) {
+			return Integer.compare(ci1.getFirstCharacterPosition(), ci2.getFirstCharacterPosition());
+		}
+		return Integer.compare(ci2.getLastCharacterPosition(), ci1.getLastCharacterPosition());
+	}
 }
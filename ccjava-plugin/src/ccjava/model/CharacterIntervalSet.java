@@ -0,0 +1,83 @@
+package ccjava.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Immutable set of character intervals. Overlapping and adjacent intervals are merged and kept sorted, so 
+ * intersection queries are a binary search.
+ */
+public class CharacterIntervalSet {
+	private int[] firstCharPositions;
+	private int[] lastCharPositions;
+	
+	public CharacterIntervalSet(Collection<CharacterInterval> intervals) {
+		Validate.notNull(intervals);
+		
+		List<CharacterInterval> sortedIntervals = new ArrayList<CharacterInterval>(intervals);
+		Collections.sort(sortedIntervals, new Comparator<CharacterInterval>() {
+			@Override
+			public int compare(CharacterInterval i1, CharacterInterval i2) {
+				return Integer.compare(i1.getFirstCharacterPosition(), i2.getFirstCharacterPosition());
+			}
+		});
+		
+		int[] firsts = new int[sortedIntervals.size()];
+		int[] lasts = new int[sortedIntervals.size()];
+		int size = 0;
+		for (CharacterInterval i : sortedIntervals) {
+			if (size > 0 && i.getFirstCharacterPosition() <= lasts[size - 1] + 1) {
+				lasts[size - 1] = Math.max(lasts[size - 1], i.getLastCharacterPosition());
+			} else {
+				firsts[size] = i.getFirstCharacterPosition();
+				lasts[size] = i.getLastCharacterPosition();
+				++size;
+			}
+		}
+		
+		this.firstCharPositions = Arrays.copyOf(firsts, size);
+		this.lastCharPositions = Arrays.copyOf(lasts, size);
+	}
+	
+	public boolean isEmpty() {
+		return this.firstCharPositions.length == 0;
+	}
+	
+	/**
+	 * Number of disjoint intervals, after merging.
+	 */
+	public int size() {
+		return this.firstCharPositions.length;
+	}
+	
+	public boolean intersects(CharacterInterval interval) {
+		Validate.notNull(interval);
+		
+		return intersects(interval.getFirstCharacterPosition(), interval.getLastCharacterPosition());
+	}
+	
+	public boolean intersects(int firstCharPos, int lastCharPos) {
+		// Finds the last interval starting at or before lastCharPos. Only it can intersect, since the intervals are 
+		// disjoint and sorted.
+		int low = 0;
+		int high = this.firstCharPositions.length - 1;
+		int candidate = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.firstCharPositions[mid] <= lastCharPos) {
+				candidate = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		
+		return candidate >= 0 && this.lastCharPositions[candidate] >= firstCharPos;
+	}
+}
@@ -2,20 +2,21 @@ package ccjava.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.Validate;
-import org.jgrapht.alg.util.UnionFind;
 
-import ccjava.DEFINES;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
 
 public class ClusterChanges {
 	private Changeset changeset;
-	private String relatedDiffExtractionLastLogMessage;
+	private int threads = 1;
+	private AnalysisBudget budget = new AnalysisBudget();
 	
 	private Set<RelatedDiffPair> relatedDiffs;
 	private List<Partition> partitions;
@@ -23,11 +24,31 @@ public class ClusterChanges {
 	public ClusterChanges(Changeset changeset) {
 		Validate.notNull(changeset);
 		
-		this.changeset = changeset;
+		this.changeset = changeset.freeze(); // diff regions can't be added after the analysis starts
+	}
+	
+	/**
+	 * Number of threads used to find the related diffs. The results don't depend on this value.
+	 */
+	public void setThreads(int threads) {
+		Validate.isTrue(threads >= 1);
+		
+		this.threads = threads;
+	}
+	
+	/**
+	 * The budget checked while finding the related diffs and the partitions. Once it is exceeded, run() throws a
+	 * BudgetExceededException. Unlimited by default.
+	 */
+	public void setBudget(AnalysisBudget budget) {
+		Validate.notNull(budget);
+		
+		this.budget = budget;
 	}
 	
 	public List<Partition> run() {
 		this.relatedDiffs = extractRelatedDiffs();
+		this.budget.check();
 		this.partitions = partitionDiffs(this.relatedDiffs);
 		return partitions;
 	}
@@ -48,24 +69,31 @@ public class ClusterChanges {
 		return Collections.unmodifiableList(partitions);
 	}
 
+	/*
+	 * Diff regions are numbered in the order of getDiffRegions() and grouped by a union-find over their numbers. 
+	 * Partitions are ordered by their first diff region and numbered in that order.
+	 */
 	private List<Partition> partitionDiffs(Set<RelatedDiffPair> relatedDiffs) {
-		UnionFind<DiffRegion> uf = new UnionFind<DiffRegion>(this.changeset.getDiffRegions());
-		for (RelatedDiffPair rdp : relatedDiffs) {
-			uf.union(rdp.getFirstDiffRegion(), rdp.getSecondDiffRegion());
+		List<DiffRegion> diffRegions = new ArrayList<DiffRegion>(this.changeset.getDiffRegions());
+		Map<DiffRegion, Integer> diffRegionIndexes = new IdentityHashMap<DiffRegion, Integer>();
+		for (int i = 0; i < diffRegions.size(); ++i) {
+			diffRegionIndexes.put(diffRegions.get(i), i);
 		}
 		
-		Map<DiffRegion, Set<DiffRegion>> partitionMap = new HashMap<DiffRegion, Set<DiffRegion>>();
-		for (DiffRegion dr : this.changeset.getDiffRegions()) {
-			DiffRegion partitionRoot = uf.find(dr);
-			if (!partitionMap.containsKey(partitionRoot)) {
-				partitionMap.put(partitionRoot, new HashSet<DiffRegion>());
-			}
-			partitionMap.get(partitionRoot).add(dr);
+		IntUnionFind uf = new IntUnionFind(diffRegions.size());
+		for (RelatedDiffPair rdp : relatedDiffs) {
+			uf.union(diffRegionIndexes.get(rdp.getFirstDiffRegion()), diffRegionIndexes.get(rdp.getSecondDiffRegion()));
 		}
 		
-		List<Partition> partitions = new ArrayList<Partition>();
-		for (Set<DiffRegion> drs : partitionMap.values()) {
-			partitions.add(new Partition(drs));
+		List<Partition> partitions = new ArrayList<Partition>(uf.getNumberOfSets());
+		for (int[] set : uf.getSets()) {
+			Set<DiffRegion> drs = new LinkedHashSet<DiffRegion>();
+			for (int i : set) {
+				drs.add(diffRegions.get(i));
+			}
+			Partition p = new Partition(drs);
+			p.setId(partitions.size() + 1);
+			partitions.add(p);
 		}
 		
 		logPartitions(partitions);
@@ -74,105 +102,22 @@ public class ClusterChanges {
 	}
 
 	private Set<RelatedDiffPair> extractRelatedDiffs() {
-		Set<RelatedDiffPair> relatedDiffs = new HashSet<RelatedDiffPair>();
+		Log.info(LogCategory.RELATED_DIFFS, "\n***Extracting related diffs");
 		
-		if (DEFINES.LOG_RELATED_DIFFS) {
-			System.out.println("\n***Extracting related diffs");
-		}
-		
-		for (DiffRegion dr1 : this.changeset.getDiffRegions()) {
-			for (DiffRegion dr2 : this.changeset.getDiffRegions()) {
-				if (dr1 != dr2) {
-					RelatedDiffPair rdp = null;
-					if (defUseRelated(dr1, dr2)) { 
-						rdp = new RelatedDiffPair(dr1, dr2, RelatedDiffPair.DiffRelationType.DEF_USE);
-					} else if (useUseRelated(dr1, dr2)) {
-						rdp = new RelatedDiffPair(dr1, dr2, RelatedDiffPair.DiffRelationType.USE_USE);
-					} else if (sameEnclosingMethodRelated(dr1, dr2)) {
-						rdp = new RelatedDiffPair(dr1, dr2, RelatedDiffPair.DiffRelationType.SAME_ENCLOSING_METHOD);
-					}
-					
-					if (rdp != null) {
-						boolean relationWasNotInTheSet = relatedDiffs.add(rdp);
-					
-						if (DEFINES.LOG_RELATED_DIFFS) {
-							if (!relationWasNotInTheSet) {
-								System.out.print(this.relatedDiffExtractionLastLogMessage);
-							}
-						}
-					}
-				}
-			}
+		RelatedDiffExtractor extractor = new RelatedDiffExtractor(this.changeset.getDiffRegions(), this.threads);
+		extractor.setBudget(this.budget);
+		Set<RelatedDiffPair> relatedDiffs = extractor.extract();
+		int id = 1;
+		for (RelatedDiffPair rdp : relatedDiffs) {
+			rdp.setId(id++);
 		}
-		
 		return relatedDiffs;
 	}
-
-	private boolean defUseRelated(DiffRegion dr1, DiffRegion dr2) {
-		for (Use u : dr1.getUsesInside()) {
-			if (dr2.contains(u.getAssociatedDefinition())) {
-				logDefUseRelated(dr2, dr1, u.getAssociatedDefinition(), u);
-				return true;
-			}
-		}
-		
-		for (Use u : dr2.getUsesInside()) {
-			if (dr1.contains(u.getAssociatedDefinition())) {
-				logDefUseRelated(dr1, dr2, u.getAssociatedDefinition(), u);
-				return true;
-			}
-		}
-		
-		return false;
-	}
-
-	private boolean useUseRelated(DiffRegion dr1, DiffRegion dr2) {
-		for (Use u1 : dr1.getUsesInside()) {
-			if (u1.getAssociatedDefinition() != null && !u1.getAssociatedDefinition().isInsideADiffRegion()) {
-				for (Use u2 : dr2.getUsesInside()) {
-					if (u1.getAssociatedDefinition().equals(u2.getAssociatedDefinition())) {
-						logUseUseRelated(dr1, dr2, u1, u2);
-						return true;
-					}
-				}
-			}
-		}
-		
-		return false;
-	}
-	
-	private boolean sameEnclosingMethodRelated(DiffRegion dr1, DiffRegion dr2) {
-		if (dr1.sameEnclosingMethod(dr2)) {
-			logSameEnclosingMethodRelated(dr1, dr2);
-			return true;
-		}
-		return false;
-	}
-	
-	private void logDefUseRelated(DiffRegion dr1, DiffRegion dr2, Definition d, Use u) {
-		if (DEFINES.LOG_RELATED_DIFFS) {
-			this.relatedDiffExtractionLastLogMessage = String.format("def-use relation: %s <-> %s / %s <-> %s%n", dr1, dr2, d, u);
-		}
-	}
-	
-	private void logUseUseRelated(DiffRegion dr1, DiffRegion dr2, Use u1, Use u2) {
-		if (DEFINES.LOG_RELATED_DIFFS) {
-			this.relatedDiffExtractionLastLogMessage = String.format("use-use relation: %s <-> %s / %s <-> %s%n", dr1, dr2, u1, u2);
-		}
-	}
-	
-	private void logSameEnclosingMethodRelated(DiffRegion dr1, DiffRegion dr2) {
-		if (DEFINES.LOG_RELATED_DIFFS) {
-			this.relatedDiffExtractionLastLogMessage = String.format("same enclosing method relation: %s <-> %s %n", dr1, dr2);
-		}
-	}
 	
 	private void logPartitions(List<Partition> partitions) {
-		if (DEFINES.LOG_PARTITIONS) {
-			System.out.println("\n***Calculating partitions");
-			for (Partition p : partitions) {
-				System.out.println(p);
-			}
+		Log.info(LogCategory.PARTITIONS, "\n***Calculating partitions");
+		for (Partition p : partitions) {
+			Log.debug(LogCategory.PARTITIONS, "%s", p);
 		}
 	}
 }
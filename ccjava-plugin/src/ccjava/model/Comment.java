@@ -2,7 +2,7 @@ package ccjava.model;
 
 import org.apache.commons.lang3.Validate;
 
-public class Comment {
+public class Comment implements Positioned {
 	private SourceFile sourceFile;
 	private CharacterInterval position;
 	
@@ -19,6 +19,7 @@ public class Comment {
 		return this.sourceFile;
 	}
 	
+	@Override
 	public CharacterInterval getPosition() {
 		return this.position;
 	}
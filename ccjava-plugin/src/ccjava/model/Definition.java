@@ -6,26 +6,42 @@ import java.util.Set;
 
 import org.apache.commons.lang3.Validate;
 
-public class Definition {
-	private static int NEXT_ID = 1;
+public class Definition implements Positioned {
 	private int id;
 	private String name;
 	private SourceFile sourceFile;
 	private CharacterInterval position;
-	private String bindingKey;
+	private BindingKeyTable bindingKeyTable;
+	private int bindingKeyId;
 	private boolean methodDefinition;
 	private boolean typeDefinition;
 	private Set<DiffRegion> enclosingDiffRegions;
 	
+	/**
+	 * Creates a definition with its own binding key table. Definitions created by a parser share the table of the
+	 * analysis instead.
+	 */
 	public Definition(String name, SourceFile sourceFile, CharacterInterval position, String bindingKey) {
+		this(name, sourceFile, position, new BindingKeyTable(), bindingKey);
+	}
+	
+	private Definition(String name, SourceFile sourceFile, CharacterInterval position, BindingKeyTable bindingKeyTable,
+			String bindingKey) {
+		this(name, sourceFile, position, bindingKeyTable, bindingKeyTable.getId(bindingKey));
+	}
+	
+	public Definition(String name, SourceFile sourceFile, CharacterInterval position, BindingKeyTable bindingKeyTable, 
+			int bindingKeyId) {
 		Validate.notBlank(name);
 		Validate.notNull(sourceFile);
 		Validate.notNull(position);
-		Validate.notBlank(bindingKey);
+		Validate.notNull(bindingKeyTable);
+		Validate.notBlank(bindingKeyTable.getKey(bindingKeyId));
 		
 		this.name = name;
 		this.position = position;
-		this.bindingKey = bindingKey;
+		this.bindingKeyTable = bindingKeyTable;
+		this.bindingKeyId = bindingKeyId;
 		this.methodDefinition = false;
 		this.typeDefinition = false;
 		
@@ -35,13 +51,18 @@ public class Definition {
 		this.enclosingDiffRegions = new HashSet<DiffRegion>();
 	}
 	
+	/**
+	 * Assigned by Changeset.freeze(), following the source file paths and the definition positions.
+	 */
 	public int getId() {
-		if (id <= 0) {
-			this.id = NEXT_ID++;
-		}
+		Validate.validState(this.id > 0, "id not assigned yet");
 		
 		return this.id;
 	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
 
 	public String getName() {
 		return this.name;
@@ -51,12 +72,24 @@ public class Definition {
 		return this.sourceFile;
 	}
 	
+	@Override
 	public CharacterInterval getPosition() {
 		return this.position;
 	}
 	
 	public String getBindingKey() {
-		return this.bindingKey;
+		return this.bindingKeyTable.getKey(this.bindingKeyId);
+	}
+	
+	/**
+	 * Id of the binding key in getBindingKeyTable().
+	 */
+	public int getBindingKeyId() {
+		return this.bindingKeyId;
+	}
+	
+	public BindingKeyTable getBindingKeyTable() {
+		return this.bindingKeyTable;
 	}
 	
 	// for an OOP language like Java, if this is either a type or a method definition
@@ -129,6 +162,6 @@ public class Definition {
 
 	@Override
 	public String toString() {
-		return String.format("\"%s\" @ %s:%s | %s", name, sourceFile.getPath(), position.toString(), bindingKey);
+		return String.format("\"%s\" @ %s:%s | %s", name, sourceFile.getPath(), position.toString(), getBindingKey());
 	}
 }
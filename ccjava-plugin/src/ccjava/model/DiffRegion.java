@@ -9,7 +9,6 @@ import org.apache.commons.lang3.Validate;
 import ccjava.diffparser.LineInterval;
 
 public class DiffRegion {
-	private static int NEXT_ID = 1;
 	private int id;
 	private SourceFile sourceFile;
 	private CharacterInterval characterSpan;
@@ -30,13 +29,18 @@ public class DiffRegion {
 		this.enclosingMethod = getOutermostEnclosingMethod();
 	}
 	
+	/**
+	 * Assigned by Changeset.freeze(), in the order of getDiffRegions().
+	 */
 	public int getId() {
-		if (id <= 0) {
-			this.id = NEXT_ID++;
-		}
+		Validate.validState(this.id > 0, "id not assigned yet");
 		
 		return this.id;
 	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
 
 	private void setDefinitionsInside(Set<Definition> definitionsInside) {
 		Validate.notNull(definitionsInside);		
@@ -0,0 +1,102 @@
+package ccjava.model;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Union-find over the elements 0..size-1, with path compression and union by rank.
+ */
+class IntUnionFind {
+	private int[] parents;
+	private byte[] ranks;
+	private int numberOfSets;
+	
+	public IntUnionFind(int size) {
+		Validate.isTrue(size >= 0);
+		
+		this.parents = new int[size];
+		this.ranks = new byte[size];
+		for (int i = 0; i < size; ++i) {
+			this.parents[i] = i;
+		}
+		this.numberOfSets = size;
+	}
+	
+	public int find(int e) {
+		int root = e;
+		while (this.parents[root] != root) {
+			root = this.parents[root];
+		}
+		
+		while (this.parents[e] != root) {
+			int next = this.parents[e];
+			this.parents[e] = root;
+			e = next;
+		}
+		
+		return root;
+	}
+	
+	/**
+	 * Merges the sets of a and b. Returns false if they were already in the same set.
+	 */
+	public boolean union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA == rootB) {
+			return false;
+		}
+		
+		if (this.ranks[rootA] < this.ranks[rootB]) {
+			this.parents[rootA] = rootB;
+		} else if (this.ranks[rootA] > this.ranks[rootB]) {
+			this.parents[rootB] = rootA;
+		} else {
+			this.parents[rootB] = rootA;
+			++this.ranks[rootA];
+		}
+		--this.numberOfSets;
+		
+		return true;
+	}
+	
+	public int size() {
+		return this.parents.length;
+	}
+	
+	public int getNumberOfSets() {
+		return this.numberOfSets;
+	}
+	
+	/**
+	 * Returns the elements grouped by set. Sets are ordered by their smallest element and the elements of each set
+	 * are in ascending order.
+	 */
+	public int[][] getSets() {
+		// Numbers the sets in order of their smallest element and counts their elements. The elements are then
+		// placed in their sets with a counting sort.
+		int[] setNumbers = new int[this.parents.length];
+		int[] rootSetNumbers = new int[this.parents.length]; // 0 if the set of the root wasn't numbered yet
+		int[] setSizes = new int[this.numberOfSets];
+		int numberedSets = 0;
+		for (int i = 0; i < this.parents.length; ++i) {
+			int root = find(i);
+			if (rootSetNumbers[root] == 0) {
+				rootSetNumbers[root] = ++numberedSets;
+			}
+			setNumbers[i] = rootSetNumbers[root] - 1;
+			++setSizes[setNumbers[i]];
+		}
+		
+		int[][] sets = new int[this.numberOfSets][];
+		for (int s = 0; s < sets.length; ++s) {
+			sets[s] = new int[setSizes[s]];
+			setSizes[s] = 0;
+		}
+		for (int i = 0; i < this.parents.length; ++i) {
+			int s = setNumbers[i];
+			sets[s][setSizes[s]++] = i;
+		}
+		
+		return sets;
+	}
+}
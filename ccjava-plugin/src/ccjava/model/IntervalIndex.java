@@ -0,0 +1,133 @@
+package ccjava.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Static index answering which items intersect a character interval in O(log n + k). Items are sorted by their 
+ * first character position and laid out as an implicit balanced binary tree, where each node also keeps the 
+ * maximum last character position of its subtree.
+ * 
+ * Query results follow the order in which the items were given.
+ */
+public class IntervalIndex<T extends Positioned> {
+	private static class IndexBuffer {
+		public int[] indexes = new int[8];
+		public int size = 0;
+		
+		public void add(int index) {
+			if (this.size == this.indexes.length) {
+				this.indexes = Arrays.copyOf(this.indexes, this.size * 2);
+			}
+			this.indexes[this.size++] = index;
+		}
+	}
+	
+	private List<T> items;
+	// The following arrays are sorted by first character position.
+	private int[] itemIndexes;
+	private int[] firstCharPositions;
+	private int[] lastCharPositions;
+	private int[] subtreeMaxLastCharPositions;
+	
+	public IntervalIndex(Collection<? extends T> items) {
+		Validate.notNull(items);
+		
+		this.items = new ArrayList<T>(items);
+		
+		final int n = this.items.size();
+		final int[] firsts = new int[n];
+		final int[] lasts = new int[n];
+		List<Integer> sortedIndexes = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; ++i) {
+			CharacterInterval position = this.items.get(i).getPosition();
+			firsts[i] = position.getFirstCharacterPosition();
+			lasts[i] = position.getLastCharacterPosition();
+			sortedIndexes.add(i);
+		}
+		Collections.sort(sortedIndexes, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Integer.compare(firsts[i1], firsts[i2]);
+			}
+		});
+		
+		this.itemIndexes = new int[n];
+		this.firstCharPositions = new int[n];
+		this.lastCharPositions = new int[n];
+		for (int i = 0; i < n; ++i) {
+			int itemIndex = sortedIndexes.get(i);
+			this.itemIndexes[i] = itemIndex;
+			this.firstCharPositions[i] = firsts[itemIndex];
+			this.lastCharPositions[i] = lasts[itemIndex];
+		}
+		
+		this.subtreeMaxLastCharPositions = new int[n];
+		computeSubtreeMaxLastCharPositions(0, n - 1);
+	}
+	
+	public int size() {
+		return this.items.size();
+	}
+	
+	/**
+	 * Returns the items whose position intersects the span, in the order they were given.
+	 */
+	public List<T> findIntersecting(CharacterInterval span) {
+		Validate.notNull(span);
+		
+		IndexBuffer found = new IndexBuffer();
+		findIntersecting(0, this.items.size() - 1, span.getFirstCharacterPosition(), span.getLastCharacterPosition(),
+				found);
+		
+		if (found.size == 0) {
+			return Collections.emptyList();
+		}
+		
+		Arrays.sort(found.indexes, 0, found.size);
+		List<T> result = new ArrayList<T>(found.size);
+		for (int i = 0; i < found.size; ++i) {
+			result.add(this.items.get(found.indexes[i]));
+		}
+		return result;
+	}
+	
+	private void findIntersecting(int low, int high, int firstCharPos, int lastCharPos, IndexBuffer found) {
+		if (low > high) {
+			return;
+		}
+		
+		int mid = (low + high) >>> 1;
+		if (this.subtreeMaxLastCharPositions[mid] < firstCharPos) {
+			return; // nothing in this subtree reaches the span
+		}
+		
+		findIntersecting(low, mid - 1, firstCharPos, lastCharPos, found);
+		
+		if (this.firstCharPositions[mid] <= lastCharPos) {
+			if (this.lastCharPositions[mid] >= firstCharPos) {
+				found.add(this.itemIndexes[mid]);
+			}
+			findIntersecting(mid + 1, high, firstCharPos, lastCharPos, found);
+		}
+	}
+	
+	private int computeSubtreeMaxLastCharPositions(int low, int high) {
+		if (low > high) {
+			return Integer.MIN_VALUE;
+		}
+		
+		int mid = (low + high) >>> 1;
+		int max = Math.max(this.lastCharPositions[mid], Math.max(
+				computeSubtreeMaxLastCharPositions(low, mid - 1), 
+				computeSubtreeMaxLastCharPositions(mid + 1, high)));
+		this.subtreeMaxLastCharPositions[mid] = max;
+		return max;
+	}
+}
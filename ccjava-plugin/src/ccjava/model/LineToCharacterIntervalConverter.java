@@ -4,4 +4,9 @@ import ccjava.diffparser.LineInterval;
 
 public interface LineToCharacterIntervalConverter {
 	CharacterInterval getCharacterInterval(LineInterval lines);
+	
+	/**
+	 * Returns the number of the line containing the character position.
+	 */
+	int getLineNumber(int characterPosition);
 }
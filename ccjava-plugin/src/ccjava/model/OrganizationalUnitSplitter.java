@@ -0,0 +1,58 @@
+package ccjava.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import ccjava.diffparser.LineInterval;
+
+/**
+ * Splits the line span of a diff region so that each part contains at most one more organizational unit than the 
+ * part before it.
+ * 
+ * Growing a span line by line, the number of organizational units intersecting it only increases when the new line
+ * contains the first character of an organizational unit. Hence, the span is split right before every line, other 
+ * than the first, where an organizational unit starts. These lines are found in a single pass over the 
+ * definitions.
+ */
+class OrganizationalUnitSplitter {
+	private LineToCharacterIntervalConverter lineToCharConverter;
+	
+	public OrganizationalUnitSplitter(LineToCharacterIntervalConverter lineToCharConverter) {
+		Validate.notNull(lineToCharConverter);
+		
+		this.lineToCharConverter = lineToCharConverter;
+	}
+	
+	public List<LineInterval> split(LineInterval span, Collection<Definition> definitions) {
+		Validate.notNull(span);
+		Validate.notNull(definitions);
+		
+		int[] splitLines = new int[definitions.size()];
+		int numSplitLines = 0;
+		for (Definition d : definitions) {
+			if (d.isOrganizationalUnit()) {
+				int firstLine = this.lineToCharConverter.getLineNumber(d.getPosition().getFirstCharacterPosition());
+				if (firstLine > span.getFirstLineNumber() && firstLine <= span.getLastLineNumber()) {
+					splitLines[numSplitLines++] = firstLine;
+				}
+			}
+		}
+		Arrays.sort(splitLines, 0, numSplitLines);
+		
+		List<LineInterval> splitSpans = new ArrayList<LineInterval>(numSplitLines + 1);
+		int currentFirstLine = span.getFirstLineNumber();
+		for (int i = 0; i < numSplitLines; ++i) {
+			if (splitLines[i] > currentFirstLine) {
+				splitSpans.add(LineInterval.fromNumbers(currentFirstLine, splitLines[i] - 1));
+				currentFirstLine = splitLines[i];
+			}
+		}
+		splitSpans.add(LineInterval.fromNumbers(currentFirstLine, span.getLastLineNumber()));
+		
+		return splitSpans;
+	}
+}
@@ -6,7 +6,6 @@ import java.util.Set;
 import org.apache.commons.lang3.Validate;
 
 public class Partition {
-	private static int NEXT_ID = 1;
 	private int id;
 	private Set<DiffRegion> diffRegions;
 
@@ -16,14 +15,19 @@ public class Partition {
 		this.diffRegions = diffRegions;
 	}
 	
+	/**
+	 * Assigned by ClusterChanges, in the order of the partitions.
+	 */
 	public int getId() {
-		if (id <= 0) {
-			this.id = NEXT_ID++;
-		}
+		Validate.validState(this.id > 0, "id not assigned yet");
 		
 		return this.id;
 	}
 	
+	void setId(int id) {
+		this.id = id;
+	}
+	
 	public Set<DiffRegion> getDiffRegions() {
 		return Collections.unmodifiableSet(this.diffRegions);
 	}
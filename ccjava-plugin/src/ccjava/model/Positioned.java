@@ -0,0 +1,8 @@
+package ccjava.model;
+
+/**
+ * Something occupying a span of characters in a source file.
+ */
+public interface Positioned {
+	CharacterInterval getPosition();
+}
@@ -0,0 +1,263 @@
+package ccjava.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.lang3.Validate;
+
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
+import ccjava.logging.LogLevel;
+
+/**
+ * Finds the related diff regions of a changeset.
+ *
+ * Instead of testing every pair of diff regions, the diff regions are grouped by the definitions they contain,
+ * the definitions they use and their enclosing methods. Only the pairs sharing one of these groups are related,
+ * so the cost is proportional to the number of relations.
+ *
+ * The result is the same as testing every ordered pair (dr1, dr2) in the order of the given diff regions, and only
+ * keeping the first relation found for each pair: def-use, then use-use, then same enclosing method.
+ *
+ * With more than one thread, the relations of different diff regions are found in parallel. The relations found
+ * for a pair are merged with a bitwise or, so the result doesn't depend on the order in which they are found.
+ */
+class RelatedDiffExtractor {
+	// Flags of the relations found between a pair of diff regions. Use-use relations are directional.
+	private static final int DEF_USE = 1;
+	private static final int USE_USE = 2;
+	private static final int USE_USE_REVERSED = 4;
+	private static final int SAME_ENCLOSING_METHOD = 8;
+	
+	private static final int MIN_DIFF_REGIONS_PER_TASK = 16;
+	
+	private class ExtractionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private int from;
+		private int to;
+		
+		public ExtractionTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= MIN_DIFF_REGIONS_PER_TASK) {
+				for (int i = this.from; i < this.to; ++i) {
+					addRelations(i);
+				}
+			} else {
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new ExtractionTask(this.from, mid), new ExtractionTask(mid, this.to));
+			}
+		}
+	}
+	
+	private List<DiffRegion> diffRegions;
+	private int threads;
+	private AnalysisBudget budget = new AnalysisBudget();
+	
+	private Map<Definition, List<Integer>> diffRegionsByDefinitionInside;
+	private Map<Definition, List<Integer>> diffRegionsByDefinitionUsed;
+	private Map<Definition, List<Integer>> diffRegionsByEnclosingMethod;
+	
+	// For each pair of diff region indexes (i, j), with i < j, the relations found between them.
+	private ConcurrentMap<Long, Integer> relations;
+	
+	public RelatedDiffExtractor(Collection<DiffRegion> diffRegions, int threads) {
+		Validate.notNull(diffRegions);
+		Validate.isTrue(threads >= 1);
+		
+		this.diffRegions = new ArrayList<DiffRegion>(diffRegions);
+		this.threads = threads;
+	}
+	
+	/**
+	 * The budget is checked before finding the relations of each diff region.
+	 */
+	public void setBudget(AnalysisBudget budget) {
+		Validate.notNull(budget);
+		
+		this.budget = budget;
+	}
+	
+	/**
+	 * Returns the related diff pairs, ordered by the positions of their diff regions.
+	 */
+	public Set<RelatedDiffPair> extract() {
+		indexDiffRegions();
+		
+		this.relations = new ConcurrentHashMap<Long, Integer>();
+		if (this.threads > 1 && this.diffRegions.size() > MIN_DIFF_REGIONS_PER_TASK) {
+			ForkJoinPool pool = new ForkJoinPool(this.threads);
+			try {
+				pool.invoke(new ExtractionTask(0, this.diffRegions.size()));
+			} finally {
+				pool.shutdown();
+			}
+		} else {
+			for (int i = 0; i < this.diffRegions.size(); ++i) {
+				addRelations(i);
+			}
+		}
+		
+		return createRelatedDiffPairs();
+	}
+	
+	private void indexDiffRegions() {
+		this.diffRegionsByDefinitionInside = new HashMap<Definition, List<Integer>>();
+		this.diffRegionsByDefinitionUsed = new HashMap<Definition, List<Integer>>();
+		this.diffRegionsByEnclosingMethod = new HashMap<Definition, List<Integer>>();
+		
+		for (int i = 0; i < this.diffRegions.size(); ++i) {
+			DiffRegion dr = this.diffRegions.get(i);
+			
+			for (Definition d : dr.getDefinitionsInside()) {
+				addToBucket(this.diffRegionsByDefinitionInside, d, i);
+			}
+			for (Use u : dr.getUsesInside()) {
+				if (u.getAssociatedDefinition() != null) {
+					addToBucket(this.diffRegionsByDefinitionUsed, u.getAssociatedDefinition(), i);
+				}
+			}
+			if (dr.getEnclosingMethod() != null) {
+				addToBucket(this.diffRegionsByEnclosingMethod, dr.getEnclosingMethod(), i);
+			}
+		}
+	}
+	
+	/*
+	 * Finds the relations in which the diff region at index i is dr1:
+	 * - def-use: dr1 uses a definition inside dr2.
+	 * - use-use: dr1 has a use whose associated definition is not inside any diff region, and dr2 uses the same
+	 * definition.
+	 * - same enclosing method: dr2 comes after dr1 and both are inside the same method.
+	 */
+	private void addRelations(int i) {
+		this.budget.check();
+		DiffRegion dr1 = this.diffRegions.get(i);
+		
+		Set<Definition> useUseDefinitions = new HashSet<Definition>();
+		for (Use u : dr1.getUsesInside()) {
+			Definition d = u.getAssociatedDefinition();
+			if (d == null) {
+				continue;
+			}
+			
+			List<Integer> defDRs = this.diffRegionsByDefinitionInside.get(d);
+			if (defDRs != null) {
+				for (int j : defDRs) {
+					if (j != i) {
+						addRelation(i, j, DEF_USE, DEF_USE);
+					}
+				}
+			}
+			
+			if (!d.isInsideADiffRegion()) {
+				useUseDefinitions.add(d);
+			}
+		}
+		
+		for (Definition d : useUseDefinitions) {
+			for (int j : this.diffRegionsByDefinitionUsed.get(d)) {
+				if (j != i) {
+					addRelation(i, j, USE_USE, USE_USE_REVERSED);
+				}
+			}
+		}
+		
+		if (dr1.getEnclosingMethod() != null) {
+			for (int j : this.diffRegionsByEnclosingMethod.get(dr1.getEnclosingMethod())) {
+				if (j > i) {
+					addRelation(i, j, SAME_ENCLOSING_METHOD, SAME_ENCLOSING_METHOD);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Records a relation from the diff region at index i to the one at index j. The relation is stored for the pair
+	 * in ascending order, with the flag for its direction.
+	 */
+	private void addRelation(int i, int j, int flag, int reversedFlag) {
+		Long key = i < j ? (((long) i) << 32) | j : (((long) j) << 32) | i;
+		int pairFlag = i < j ? flag : reversedFlag;
+		
+		Integer pairRelations = this.relations.putIfAbsent(key, pairFlag);
+		while (pairRelations != null && (pairRelations | pairFlag) != pairRelations
+				&& !this.relations.replace(key, pairRelations, pairRelations | pairFlag)) {
+			pairRelations = this.relations.get(key);
+		}
+	}
+	
+	private Set<RelatedDiffPair> createRelatedDiffPairs() {
+		List<Long> keys = new ArrayList<Long>(this.relations.keySet());
+		Collections.sort(keys);
+		
+		Set<RelatedDiffPair> relatedDiffs = new LinkedHashSet<RelatedDiffPair>();
+		for (Long key : keys) {
+			DiffRegion dr1 = this.diffRegions.get((int) (key >>> 32));
+			DiffRegion dr2 = this.diffRegions.get((int) (key & 0xFFFFFFFFL));
+			int pairRelations = this.relations.get(key);
+			
+			RelatedDiffPair rdp;
+			if ((pairRelations & DEF_USE) != 0) {
+				rdp = new RelatedDiffPair(dr1, dr2, RelatedDiffPair.DiffRelationType.DEF_USE);
+			} else if ((pairRelations & USE_USE) != 0) {
+				rdp = new RelatedDiffPair(dr1, dr2, RelatedDiffPair.DiffRelationType.USE_USE);
+			} else if ((pairRelations & SAME_ENCLOSING_METHOD) != 0) {
+				rdp = new RelatedDiffPair(dr1, dr2, RelatedDiffPair.DiffRelationType.SAME_ENCLOSING_METHOD);
+			} else {
+				rdp = new RelatedDiffPair(dr2, dr1, RelatedDiffPair.DiffRelationType.USE_USE);
+			}
+			
+			relatedDiffs.add(rdp);
+			logRelatedDiffPair(rdp);
+		}
+		
+		return relatedDiffs;
+	}
+	
+	private <K> void addToBucket(Map<K, List<Integer>> buckets, K key, int i) {
+		List<Integer> bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<Integer>();
+			buckets.put(key, bucket);
+		}
+		if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != i) {
+			bucket.add(i);
+		}
+	}
+	
+	private void logRelatedDiffPair(RelatedDiffPair rdp) {
+		if (Log.isEnabled(LogCategory.RELATED_DIFFS, LogLevel.TRACE)) {
+			switch (rdp.getRelationType()) {
+			case DEF_USE:
+				Log.trace(LogCategory.RELATED_DIFFS, "def-use relation: %s <-> %s", rdp.getFirstDiffRegion(), 
+						rdp.getSecondDiffRegion());
+				break;
+			case USE_USE:
+				Log.trace(LogCategory.RELATED_DIFFS, "use-use relation: %s <-> %s", rdp.getFirstDiffRegion(), 
+						rdp.getSecondDiffRegion());
+				break;
+			case SAME_ENCLOSING_METHOD:
+				Log.trace(LogCategory.RELATED_DIFFS, "same enclosing method relation: %s <-> %s", 
+						rdp.getFirstDiffRegion(), rdp.getSecondDiffRegion());
+				break;
+			}
+		}
+	}
+}
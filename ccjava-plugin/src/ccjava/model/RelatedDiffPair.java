@@ -9,7 +9,6 @@ public class RelatedDiffPair {
 		SAME_ENCLOSING_METHOD,
 	}
 	
-	private static int NEXT_ID = 1;
 	private int id;
 	private DiffRegion dr1;
 	private DiffRegion dr2;
@@ -24,13 +23,18 @@ public class RelatedDiffPair {
 		this.relationType = relationType;
 	}
 	
+	/**
+	 * Assigned by ClusterChanges, in the order of the related diffs.
+	 */
 	public int getId() {
-		if (id <= 0) {
-			this.id = NEXT_ID++;
-		}
+		Validate.validState(this.id > 0, "id not assigned yet");
 		
 		return this.id;
 	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
 
 	public DiffRegion getFirstDiffRegion() {
 		return dr1;
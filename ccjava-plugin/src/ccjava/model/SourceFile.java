@@ -21,6 +21,9 @@ public class SourceFile {
 	private Set<Use> uses;
 	private Set<DiffRegion> diffRegions;
 	private Set<Comment> comments;
+	private IntervalIndex<Definition> definitionIndex;
+	private IntervalIndex<Use> useIndex;
+	private IntervalIndex<Comment> commentIndex;
 	private List<String> contents;
 	
 	public SourceFile(String path, String filePath, LineToCharacterIntervalConverter lineToCharConverter) {
@@ -49,6 +52,7 @@ public class SourceFile {
 		Validate.notNull(d);
 		
 		this.definitions.add(d);
+		this.definitionIndex = null;
 	}
 	
 	public void addUses(Collection<Use> uses) {
@@ -63,6 +67,7 @@ public class SourceFile {
 		Validate.notNull(u);
 		
 		this.uses.add(u);
+		this.useIndex = null;
 	}
 	
 	public void addDiffRegions(Collection<UnifiedDiffRegion> uniDiffRegions) {
@@ -73,7 +78,7 @@ public class SourceFile {
 	
 	public void addDiffRegion(UnifiedDiffRegion uniDiffRegion) {
 		UnifiedDiffRegionToDiffRegionConverter c = new UnifiedDiffRegionToDiffRegionConverter(
-				uniDiffRegion, lineToCharConverter, this, definitions, uses);
+				uniDiffRegion, lineToCharConverter, this, getDefinitionIndex(), getUseIndex());
 		this.diffRegions.addAll(c.convert());
 	}
 	
@@ -89,6 +94,7 @@ public class SourceFile {
 		Validate.notNull(u);
 		
 		this.comments.add(u);
+		this.commentIndex = null;
 	}
 	
 	public LineToCharacterIntervalConverter getLineToCharConverter() {
@@ -103,6 +109,30 @@ public class SourceFile {
 		return uses;
 	}
 
+	/**
+	 * Index of the definitions by position. It is built when first needed after definitions are added.
+	 */
+	public IntervalIndex<Definition> getDefinitionIndex() {
+		if (this.definitionIndex == null) {
+			this.definitionIndex = new IntervalIndex<Definition>(this.definitions);
+		}
+		return this.definitionIndex;
+	}
+	
+	public IntervalIndex<Use> getUseIndex() {
+		if (this.useIndex == null) {
+			this.useIndex = new IntervalIndex<Use>(this.uses);
+		}
+		return this.useIndex;
+	}
+	
+	public IntervalIndex<Comment> getCommentIndex() {
+		if (this.commentIndex == null) {
+			this.commentIndex = new IntervalIndex<Comment>(this.comments);
+		}
+		return this.commentIndex;
+	}
+
 	public Set<DiffRegion> getDiffRegions() {
 		return Collections.unmodifiableSet(diffRegions);
 	}
@@ -1,7 +1,6 @@
 package ccjava.model;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -10,19 +9,21 @@ import org.apache.commons.lang3.StringUtils;
 
 import ccjava.diffparser.LineInterval;
 import ccjava.diffparser.UnifiedDiffRegion;
+import ccjava.logging.Log;
+import ccjava.logging.LogCategory;
 
 public class UnifiedDiffRegionToDiffRegionConverter {
 	private UnifiedDiffRegion uniDiffRegion;
 	private LineToCharacterIntervalConverter lineToCharConverter;
-	private Collection<Definition> sourceFileDefinitions;
-	private Collection<Use> sourceFileUses;
+	private IntervalIndex<Definition> sourceFileDefinitions;
+	private IntervalIndex<Use> sourceFileUses;
 	private SourceFile sourceFile;
 
 	public UnifiedDiffRegionToDiffRegionConverter(UnifiedDiffRegion uniDiffRegion,
 			LineToCharacterIntervalConverter lineToCharConverter,
 			SourceFile sourceFile,
-			Collection<Definition> sourceFileDefinitions,
-			Collection<Use> sourceFileUses) {
+			IntervalIndex<Definition> sourceFileDefinitions,
+			IntervalIndex<Use> sourceFileUses) {
 		this.uniDiffRegion = uniDiffRegion;
 		this.lineToCharConverter = lineToCharConverter;
 		this.sourceFile = sourceFile;
@@ -34,33 +35,20 @@ public class UnifiedDiffRegionToDiffRegionConverter {
 		LineInterval udrLineSpan = uniDiffRegion.getLines();
 		CharacterInterval udrCharSpan = lineToCharConverter.getCharacterInterval(udrLineSpan);
 		Set<Definition> definitionsInsideUDR = extractDefinitionsInside(sourceFileDefinitions, udrCharSpan);
-		Set<Use> usesInsideUDR = extractUsesInside(sourceFileUses, udrCharSpan);
 		
 		List<LineInterval> splitSpan = splitDiffRegionSpanBasedOnOrganizationalUnits(udrLineSpan, lineToCharConverter, definitionsInsideUDR);
 		
-		List<DiffRegion> diffRegions = createDiffRegionForEachSpan(splitSpan, definitionsInsideUDR, usesInsideUDR);
+		List<DiffRegion> diffRegions = createDiffRegionForEachSpan(splitSpan);
 		diffRegions = removedIrrelevantDiffRegions(diffRegions);
 		return diffRegions;
 	}
 
-	private Set<Definition> extractDefinitionsInside(Collection<Definition> definitions, CharacterInterval span) {
-		Set<Definition> definitionsInside = new LinkedHashSet<Definition>();
-		for (Definition d : definitions) {
-			if (d.getPosition().intersects(span)) {
-				definitionsInside.add(d);
-			}
-		}
-		return definitionsInside;
+	private Set<Definition> extractDefinitionsInside(IntervalIndex<Definition> definitions, CharacterInterval span) {
+		return new LinkedHashSet<Definition>(definitions.findIntersecting(span));
 	}
 	
-	private Set<Use> extractUsesInside(Collection<Use> uses, CharacterInterval span) {
-		Set<Use> usesInside = new LinkedHashSet<Use>();
-		for (Use u : uses) {
-			if (u.getPosition().intersects(span)) {
-				usesInside.add(u);
-			}
-		}
-		return usesInside;
+	private Set<Use> extractUsesInside(IntervalIndex<Use> uses, CharacterInterval span) {
+		return new LinkedHashSet<Use>(uses.findIntersecting(span));
 	}
 
 	/*
@@ -70,48 +58,18 @@ public class UnifiedDiffRegionToDiffRegionConverter {
 	 * we will end up with several one-line diffs, since every method is inside a class. Counting methods and classes
 	 * separately isn't ideal either since Java supports inner classes.
 	 * 
-	 * Therefore, the algorithm here keeps adding one more line to a possible diff region and if this new line makes
-	 * the number of organizational units in the region increase, then the diff region is split at that line.  
+	 * Therefore, the diff region is split at every line that makes the number of organizational units in the region 
+	 * increase, as if lines were added one by one to it. @see OrganizationalUnitSplitter
 	 */
 	private List<LineInterval> splitDiffRegionSpanBasedOnOrganizationalUnits(LineInterval originalSpan,
 			LineToCharacterIntervalConverter lineToCharConverter,
 			Set<Definition> definitionsInsideUDR) {
-		List<LineInterval> splitSpans = new ArrayList<LineInterval>(originalSpan.getLength());
-		
-		LineInterval currentSpan = LineInterval.fromNumberAndLength(originalSpan.getFirstLineNumber(), 1);
-		
-		while (originalSpan.contains(currentSpan)) {
-			int currentOrgUnitCount = countOrganizationalUnitsInside(currentSpan, lineToCharConverter, definitionsInsideUDR);
-			LineInterval newSpan = LineInterval.fromNumberAndLength(currentSpan.getFirstLineNumber(), currentSpan.getLength() + 1);
-			
-			if (!originalSpan.contains(newSpan)
-				|| countOrganizationalUnitsInside(newSpan, lineToCharConverter, definitionsInsideUDR) > currentOrgUnitCount) {
-					splitSpans.add(currentSpan);
-					currentSpan = LineInterval.fromNumberAndLength(currentSpan.getLastLineNumber() + 1, 1);
-			} else {
-				currentSpan = newSpan;
-			}
-		}
-		
-		return splitSpans;
-	}
-	
-	private int countOrganizationalUnitsInside(LineInterval lineSpan, LineToCharacterIntervalConverter lineToCharConverter, Set<Definition> definitions) {
-		CharacterInterval charSpan = lineToCharConverter.getCharacterInterval(lineSpan);
-		int organizationalUnits = 0;
-		
-		for (Definition d : definitions) {
-			if (d.isOrganizationalUnit() && d.getPosition().intersects(charSpan)) {
-				++organizationalUnits;
-			}
-		}
-		
-		return organizationalUnits;
+		return new OrganizationalUnitSplitter(lineToCharConverter).split(originalSpan, definitionsInsideUDR);
 	}
 	
 	private boolean hasOrganizationalUnitsInside(DiffRegion dr) {
-		for (Definition d : this.sourceFileDefinitions) {
-			if (d.isOrganizationalUnit() && d.getPosition().intersects(dr.getCharacterSpan())) {
+		for (Definition d : this.sourceFileDefinitions.findIntersecting(dr.getCharacterSpan())) {
+			if (d.isOrganizationalUnit()) {
 				return true;
 			}
 		}
@@ -119,15 +77,14 @@ public class UnifiedDiffRegionToDiffRegionConverter {
 		return false;
 	}
 	
-	private List<DiffRegion> createDiffRegionForEachSpan(
-			List<LineInterval> splitSpan, Set<Definition> definitionsInsideUDR, Set<Use> usesInsideUDR) {
+	private List<DiffRegion> createDiffRegionForEachSpan(List<LineInterval> splitSpan) {
 		
 		List<DiffRegion> diffRegions = new ArrayList<DiffRegion>(splitSpan.size());
 		
 		for (LineInterval unitSplitSpan : splitSpan) {
 			CharacterInterval charUnitSplitSpan = this.lineToCharConverter.getCharacterInterval(unitSplitSpan);
-			Set<Definition> unitDefinitionsInside = extractDefinitionsInside(definitionsInsideUDR, charUnitSplitSpan);
-			Set<Use> unitUsesInside = extractUsesInside(usesInsideUDR, charUnitSplitSpan);
+			Set<Definition> unitDefinitionsInside = extractDefinitionsInside(this.sourceFileDefinitions, charUnitSplitSpan);
+			Set<Use> unitUsesInside = extractUsesInside(this.sourceFileUses, charUnitSplitSpan);
 			diffRegions.add(new DiffRegion(this.sourceFile, charUnitSplitSpan, unitSplitSpan, unitDefinitionsInside, unitUsesInside));
 		}
 		
@@ -138,15 +95,15 @@ public class UnifiedDiffRegionToDiffRegionConverter {
 		List<DiffRegion> relevantDiffRegions = new ArrayList<DiffRegion>(diffRegions.size());
 		for (DiffRegion dr : diffRegions) {
 			if (isDiffRegionBlank(dr)) {
-				System.out.println("ignored blank diff region: " + dr);
+				Log.debug(LogCategory.DIFFS, "ignored blank diff region: %s", dr);
 				continue;
 			}
 			if (diffRegionContainsOnlyImportsAndPackageDeclaration(dr)) {
-				System.out.println("ignored imports/package-decl diff region: " + dr);
+				Log.debug(LogCategory.DIFFS, "ignored imports/package-decl diff region: %s", dr);
 				continue;
 			}
 			if (diffRegionContainsOnlyComments(dr)) {
-				System.out.println("ignored comments diff region: " + dr);
+				Log.debug(LogCategory.DIFFS, "ignored comments diff region: %s", dr);
 				continue;
 			}
 			
@@ -176,7 +133,7 @@ public class UnifiedDiffRegionToDiffRegionConverter {
 			if (StringUtils.isBlank(line)) {
 				continue;
 			}
-			if (!diffLineContainsOnlyComments(this.sourceFile.getComments(), line, currentLineNumber)) {
+			if (!diffLineContainsOnlyComments(this.sourceFile.getCommentIndex(), line, currentLineNumber)) {
 				return false;
 			}
 			
@@ -185,13 +142,13 @@ public class UnifiedDiffRegionToDiffRegionConverter {
 		return true;
 	}
 
-	private boolean diffLineContainsOnlyComments(Collection<Comment> comments, String line, int lineNumber) {
+	private boolean diffLineContainsOnlyComments(IntervalIndex<Comment> comments, String line, int lineNumber) {
 		CharacterInterval diffLineCharSpan = this.lineToCharConverter.getCharacterInterval(LineInterval.fromNumberAndLength(lineNumber, 1));
 		String trimmedLine = line.trim();
 		int trimmedLineFirstCharPos = diffLineCharSpan.getFirstCharacterPosition() + line.indexOf(trimmedLine);
 		int trimmedLineLastCharPos = trimmedLineFirstCharPos + trimmedLine.length() - 1;
 		CharacterInterval trimmedLineCharSpan = CharacterInterval.fromPositions(trimmedLineFirstCharPos, trimmedLineLastCharPos);
-		for (Comment c : comments) {
+		for (Comment c : comments.findIntersecting(trimmedLineCharSpan)) {
 			if (c.getPosition().contains(trimmedLineCharSpan)) {
 				return true;
 			}
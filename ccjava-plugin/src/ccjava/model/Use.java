@@ -6,25 +6,41 @@ import java.util.Set;
 
 import org.apache.commons.lang3.Validate;
 
-public class Use {
-	private static int NEXT_ID = 1;
+public class Use implements Positioned {
 	private int id;
 	private String name;
 	private SourceFile sourceFile;
 	private CharacterInterval position;
-	private String bindingKey;
+	private BindingKeyTable bindingKeyTable;
+	private int bindingKeyId;
 	private Definition associatedDefinition;
 	private Set<DiffRegion> enclosingDiffRegions;
 	
+	/**
+	 * Creates a use with its own binding key table. Uses created by a parser share the table of the analysis 
+	 * instead.
+	 */
 	public Use(String name, SourceFile sourceFile, CharacterInterval position, String bindingKey, Definition associatedDefinition) {
+		this(name, sourceFile, position, new BindingKeyTable(), bindingKey, associatedDefinition);
+	}
+	
+	private Use(String name, SourceFile sourceFile, CharacterInterval position, BindingKeyTable bindingKeyTable,
+			String bindingKey, Definition associatedDefinition) {
+		this(name, sourceFile, position, bindingKeyTable, bindingKeyTable.getId(bindingKey), associatedDefinition);
+	}
+	
+	public Use(String name, SourceFile sourceFile, CharacterInterval position, BindingKeyTable bindingKeyTable,
+			int bindingKeyId, Definition associatedDefinition) {
 		Validate.notBlank(name);
 		Validate.notNull(sourceFile);
 		Validate.notNull(position);
-		Validate.notBlank(bindingKey);
+		Validate.notNull(bindingKeyTable);
+		Validate.notBlank(bindingKeyTable.getKey(bindingKeyId));
 		
 		this.name = name;
 		this.position = position;
-		this.bindingKey = bindingKey;
+		this.bindingKeyTable = bindingKeyTable;
+		this.bindingKeyId = bindingKeyId;
 		this.associatedDefinition = associatedDefinition;
 
 		this.sourceFile = sourceFile;
@@ -33,13 +49,18 @@ public class Use {
 		this.enclosingDiffRegions = new HashSet<DiffRegion>();
 	}
 	
+	/**
+	 * Assigned by Changeset.freeze(), following the source file paths and the use positions.
+	 */
 	public int getId() {
-		if (id <= 0) {
-			this.id = NEXT_ID++;
-		}
+		Validate.validState(this.id > 0, "id not assigned yet");
 		
 		return this.id;
 	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
 
 	public String getName() {
 		return this.name;
@@ -49,12 +70,24 @@ public class Use {
 		return this.sourceFile;
 	}
 	
+	@Override
 	public CharacterInterval getPosition() {
 		return this.position;
 	}
 
 	public String getBindingKey() {
-		return this.bindingKey;
+		return this.bindingKeyTable.getKey(this.bindingKeyId);
+	}
+	
+	/**
+	 * Id of the binding key in getBindingKeyTable().
+	 */
+	public int getBindingKeyId() {
+		return this.bindingKeyId;
+	}
+	
+	public BindingKeyTable getBindingKeyTable() {
+		return this.bindingKeyTable;
 	}
 	
 	public Definition getAssociatedDefinition() {
@@ -110,7 +143,7 @@ public class Use {
 
 	@Override
 	public String toString() {
-		return String.format("\"%s\" @ %s:%s | %s | %s", name, sourceFile.getPath(), position.toString(), bindingKey,
+		return String.format("\"%s\" @ %s:%s | %s | %s", name, sourceFile.getPath(), position.toString(), getBindingKey(),
 				associatedDefinition != null ? "hasAssocDef" : "noAssocDef");
 	} 
 }
@@ -0,0 +1,189 @@
+package ccjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisDaemonTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private AnalysisDaemon daemon;
+	private Thread daemonThread;
+	private Socket socket;
+	private BufferedReader in;
+	private PrintWriter out;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.daemon = new AnalysisDaemon(0, 2);
+		this.daemonThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					daemon.run();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		this.daemonThread.start();
+		
+		this.socket = new Socket(InetAddress.getLoopbackAddress(), this.daemon.getPort());
+		this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), UTF8));
+		this.out = new PrintWriter(new OutputStreamWriter(this.socket.getOutputStream(), UTF8));
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		this.socket.close();
+		this.daemon.shutdown();
+		this.daemonThread.join();
+	}
+	
+	@Test
+	public void testSubmit() throws Exception {
+		File sourceDir = this.folder.newFolder("pr");
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tvoid m() { x++; }\n}\n");
+		
+		String[] submitted = request("SUBMIT\t" + sourceDir.getAbsolutePath() + "\theadless=true");
+		assertEquals("OK", submitted[0]);
+		
+		String[] status;
+		do {
+			Thread.sleep(50);
+			status = request("STATUS\t" + submitted[1]);
+		} while (status[1].equals("QUEUED") || status[1].equals("RUNNING"));
+		
+		assertEquals("OK", status[0]);
+		assertEquals("DONE", status[1]);
+		assertEquals(new File(sourceDir, Analysis.RESULTS_FOLDER).getAbsolutePath(), status[2]);
+		assertTrue(new File(status[2], Analysis.BINARY_RESULTS_FILENAME).exists());
+	}
+	
+	@Test
+	public void testUpdate() throws Exception {
+		File sourceDir = this.folder.newFolder("pr");
+		File usesFile = new File(sourceDir, Analysis.RESULTS_FOLDER + "/uses.csv");
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tvoid m() { x++; }\n}\n");
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/B.java"),
+				"package alpha;\npublic class B {\n\tvoid b(A a) { a.m(); }\n}\n");
+		
+		String[] submitted = request("SUBMIT\t" + sourceDir.getAbsolutePath() + "\theadless=true\tincremental=true");
+		assertEquals("DONE", waitForJob(submitted[1])[1]);
+		
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tint y;\n\tvoid m() { x++; y++; }\n}\n");
+		String[] updated = request("UPDATE\t" + sourceDir.getAbsolutePath() + "\tsrc/alpha/A.java");
+		assertEquals("OK", updated[0]);
+		assertEquals("DONE", waitForJob(updated[1])[1]);
+		String updatedUses = FileUtils.readFileToString(usesFile);
+		
+		String[] full = request("SUBMIT\t" + sourceDir.getAbsolutePath() + "\theadless=true");
+		assertEquals("DONE", waitForJob(full[1])[1]);
+		assertEquals(FileUtils.readFileToString(usesFile), updatedUses);
+	}
+	
+	/*
+	 * The jobs of a folder run in order, so an update doesn't need to wait for the run it updates.
+	 */
+	@Test
+	public void testUpdateRightAfterSubmit() throws Exception {
+		File sourceDir = this.folder.newFolder("pr");
+		File usesFile = new File(sourceDir, Analysis.RESULTS_FOLDER + "/uses.csv");
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tvoid m() { x++; }\n}\n");
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/B.java"),
+				"package alpha;\npublic class B {\n\tvoid b(A a) { a.m(); }\n}\n");
+		
+		String incrementalSubmit = "SUBMIT\t" + sourceDir.getAbsolutePath() + "\theadless=true\tincremental=true";
+		String[] submitted = request(incrementalSubmit);
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tint y;\n\tvoid m() { x++; y++; }\n}\n");
+		String[] updated = request("UPDATE\t" + sourceDir.getAbsolutePath() + "\tsrc/alpha/A.java");
+		String[] resubmitted = request(incrementalSubmit);
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/B.java"),
+				"package alpha;\npublic class B {\n\tvoid b(A a) { a.m(); a.y++; }\n}\n");
+		String[] updatedAgain = request("UPDATE\t" + sourceDir.getAbsolutePath() + "\tsrc/alpha/B.java");
+		
+		assertEquals("DONE", waitForJob(submitted[1])[1]);
+		assertEquals("DONE", waitForJob(updated[1])[1]);
+		assertEquals("DONE", waitForJob(resubmitted[1])[1]);
+		assertEquals("DONE", waitForJob(updatedAgain[1])[1]);
+		String updatedUses = FileUtils.readFileToString(usesFile);
+		
+		String[] full = request("SUBMIT\t" + sourceDir.getAbsolutePath() + "\theadless=true");
+		assertEquals("DONE", waitForJob(full[1])[1]);
+		assertEquals(FileUtils.readFileToString(usesFile), updatedUses);
+	}
+	
+	@Test
+	public void testFailedJob() throws Exception {
+		String missingDir = new File(this.folder.getRoot(), "missing").getAbsolutePath();
+		String[] submitted = request("SUBMIT\t" + missingDir + "\theadless=true");
+		
+		String[] status;
+		do {
+			Thread.sleep(50);
+			status = request("STATUS\t" + submitted[1]);
+		} while (status[1].equals("QUEUED") || status[1].equals("RUNNING"));
+		
+		assertEquals("FAILED", status[1]);
+		assertEquals(4, status.length);
+	}
+	
+	@Test
+	public void testInvalidRequests() throws Exception {
+		assertEquals("ERROR", request("FOO")[0]);
+		assertEquals("ERROR", request("SUBMIT")[0]);
+		assertEquals("ERROR", request("SUBMIT\t/tmp\tfoo=bar")[0]);
+		assertEquals("ERROR", request("SUBMIT\t/tmp\tparserThreads=0")[0]);
+		assertEquals("ERROR", request("STATUS\t12345")[0]);
+		assertEquals("ERROR", request("STATUS\tabc")[0]);
+		assertEquals("ERROR", request("UPDATE")[0]);
+		assertEquals("ERROR", request("UPDATE\t/tmp\tA.java")[0]);
+	}
+	
+	@Test
+	public void testShutdown() throws Exception {
+		assertEquals("OK", request("SHUTDOWN")[0]);
+		this.daemonThread.join(10000);
+		assertFalse(this.daemonThread.isAlive());
+	}
+	
+	private String[] waitForJob(String jobId) throws Exception {
+		String[] status;
+		do {
+			Thread.sleep(50);
+			status = request("STATUS\t" + jobId);
+		} while (status[1].equals("QUEUED") || status[1].equals("RUNNING"));
+		return status;
+	}
+	
+	private String[] request(String request) throws IOException {
+		this.out.print(request + "\n");
+		this.out.flush();
+		return this.in.readLine().split("\t");
+	}
+}
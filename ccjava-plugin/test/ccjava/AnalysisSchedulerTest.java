@@ -0,0 +1,212 @@
+package ccjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisSchedulerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private String emptyDir;
+	private long emptyDirCost;
+	private AtomicInteger running;
+	private AtomicInteger maxRunning;
+	private List<Integer> startOrder;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.emptyDir = this.folder.newFolder("empty").getAbsolutePath();
+		this.emptyDirCost = AnalysisScheduler.estimateHeapCost(this.emptyDir);
+		this.running = new AtomicInteger();
+		this.maxRunning = new AtomicInteger();
+		this.startOrder = Collections.synchronizedList(new ArrayList<Integer>());
+	}
+	
+	@Test
+	public void testEstimateHeapCost() throws Exception {
+		File sourceDir = this.folder.newFolder("pr");
+		FileUtils.writeStringToFile(new File(sourceDir, "README"), "not an input");
+		assertEquals(this.emptyDirCost, AnalysisScheduler.estimateHeapCost(sourceDir.getPath()));
+		
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"), "package alpha;\npublic class A {}\n");
+		long javaCost = AnalysisScheduler.estimateHeapCost(sourceDir.getPath());
+		assertTrue(javaCost > this.emptyDirCost);
+		
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java.patch"), "@@ -1 +1 @@\n");
+		assertTrue(AnalysisScheduler.estimateHeapCost(sourceDir.getPath()) > javaCost);
+		
+		assertEquals(this.emptyDirCost, AnalysisScheduler.estimateHeapCost(new File(sourceDir, "missing").getPath()));
+	}
+	
+	@Test
+	public void testHeapBudget() throws Exception {
+		runAll(new AnalysisScheduler(4, 2 * this.emptyDirCost), 8, new CyclicBarrier(2));
+		
+		assertEquals(2, this.maxRunning.get());
+	}
+	
+	@Test
+	public void testConcurrency() throws Exception {
+		runAll(new AnalysisScheduler(3, 100 * this.emptyDirCost), 9, new CyclicBarrier(3));
+		
+		assertEquals(3, this.maxRunning.get());
+	}
+	
+	@Test
+	public void testOverBudgetRunsAlone() throws Exception {
+		runAll(new AnalysisScheduler(4, 1), 4, null);
+		
+		assertEquals(1, this.maxRunning.get());
+		assertEquals(4, this.startOrder.size());
+	}
+	
+	@Test
+	public void testSubmissionOrder() throws Exception {
+		runAll(new AnalysisScheduler(4, this.emptyDirCost), 8, null);
+		
+		for (int i = 0; i < 8; ++i) {
+			assertEquals(i, (int) this.startOrder.get(i));
+		}
+	}
+	
+	@Test
+	public void testCancelledWhileQueued() throws Exception {
+		AnalysisScheduler scheduler = new AnalysisScheduler(1, 100 * this.emptyDirCost);
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<Void> first = scheduler.submit(new Analysis(this.emptyDir), new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				release.await();
+				return null;
+			}
+		});
+		Future<Void> cancelled = scheduler.submit(new Analysis(this.emptyDir), new Callable<Void>() {
+			@Override
+			public Void call() {
+				startOrder.add(1);
+				return null;
+			}
+		});
+		Future<Void> last = scheduler.submit(new Analysis(this.emptyDir), new Callable<Void>() {
+			@Override
+			public Void call() {
+				startOrder.add(2);
+				return null;
+			}
+		});
+		scheduler.shutdown();
+		
+		assertTrue(cancelled.cancel(false));
+		release.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		last.get(10, TimeUnit.SECONDS);
+		scheduler.awaitTermination();
+		
+		assertEquals(Arrays.asList(2), this.startOrder);
+	}
+	
+	@Test
+	public void testSameFolderInOrder() throws Exception {
+		AnalysisScheduler scheduler = new AnalysisScheduler(3, 100 * this.emptyDirCost);
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<Void> first = scheduler.submit(new Analysis(this.emptyDir), new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				release.await();
+				startOrder.add(0);
+				return null;
+			}
+		});
+		Future<Void> sameFolder = scheduler.submit(new Analysis(this.emptyDir), new Callable<Void>() {
+			@Override
+			public Void call() {
+				startOrder.add(1);
+				return null;
+			}
+		});
+		String otherDir = this.folder.newFolder("other").getPath();
+		Future<Void> otherFolder = scheduler.submit(new Analysis(otherDir), new Callable<Void>() {
+			@Override
+			public Void call() {
+				startOrder.add(2);
+				return null;
+			}
+		});
+		scheduler.shutdown();
+		
+		otherFolder.get(10, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList(2), this.startOrder);
+		release.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		sameFolder.get(10, TimeUnit.SECONDS);
+		scheduler.awaitTermination();
+		
+		assertEquals(Arrays.asList(2, 0, 1), this.startOrder);
+	}
+	
+	@Test(expected = RejectedExecutionException.class)
+	public void testSubmitAfterShutdown() throws Exception {
+		AnalysisScheduler scheduler = new AnalysisScheduler(1, this.emptyDirCost);
+		scheduler.shutdown();
+		scheduler.submit(new Analysis(this.emptyDir), new Callable<Void>() {
+			@Override
+			public Void call() {
+				return null;
+			}
+		});
+	}
+	
+	/*
+	 * With a barrier, the tasks wait for each other in groups of its size, which proves that many of them run at the 
+	 * same time. Without one, each task just sleeps for a while. Each task has its own empty folder, since analyses of
+	 * the same folder don't run at the same time.
+	 */
+	private void runAll(AnalysisScheduler scheduler, int count, final CyclicBarrier barrier) throws Exception {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < count; ++i) {
+			final int index = i;
+			String sourceDir = this.folder.newFolder("empty" + i).getPath();
+			futures.add(scheduler.submit(new Analysis(sourceDir), new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					startOrder.add(index);
+					int r = running.incrementAndGet();
+					synchronized (maxRunning) {
+						maxRunning.set(Math.max(maxRunning.get(), r));
+					}
+					if (barrier != null) {
+						barrier.await(10, TimeUnit.SECONDS);
+					} else {
+						Thread.sleep(50);
+					}
+					running.decrementAndGet();
+					return null;
+				}
+			}));
+		}
+		scheduler.shutdown();
+		
+		for (Future<Void> f : futures) {
+			f.get(30, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package ccjava;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ccjava.model.BudgetExceededException;
+
+public class AnalysisTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testPartialResultsMarker() throws Exception {
+		String sourceDir = this.folder.getRoot().getAbsolutePath();
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tvoid m() { x++; }\n}\n");
+		File marker = new File(new File(sourceDir, Analysis.RESULTS_FOLDER), Analysis.PARTIAL_RESULTS_MARKER_FILENAME);
+		
+		Analysis analysis = new Analysis(sourceDir);
+		analysis.setHeadless(true);
+		analysis.setOption("maxAstNodes", "5");
+		try {
+			analysis.run();
+			fail();
+		} catch (BudgetExceededException e) {
+			// expected
+		}
+		assertTrue(marker.exists());
+		assertTrue(FileUtils.readFileToString(marker).contains("AST nodes"));
+		
+		analysis.setMaxAstNodes(0);
+		analysis.run();
+		assertFalse(marker.exists());
+	}
+}
@@ -0,0 +1,96 @@
+package ccjava.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogTest {
+	private PrintStream originalOut;
+	private ByteArrayOutputStream out;
+	
+	@Before
+	public void setUp() {
+		this.originalOut = System.out;
+		this.out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(this.out, true));
+	}
+	
+	@After
+	public void tearDown() {
+		Log.close();
+		Log.configure("");
+		System.setOut(this.originalOut);
+	}
+	
+	@Test
+	public void testDefaultLevel() {
+		Log.configure("");
+		for (LogCategory c : LogCategory.values()) {
+			assertEquals(Log.DEFAULT_LEVEL, Log.getLevel(c));
+		}
+	}
+	
+	@Test
+	public void testConfigure() {
+		Log.configure("useVisitor=trace, warn ,partitions=off");
+		assertEquals(LogLevel.TRACE, Log.getLevel(LogCategory.USE_VISITOR));
+		assertEquals(LogLevel.OFF, Log.getLevel(LogCategory.PARTITIONS));
+		assertEquals(LogLevel.WARN, Log.getLevel(LogCategory.PARSER));
+		
+		assertTrue(Log.isEnabled(LogCategory.USE_VISITOR, LogLevel.DEBUG));
+		assertTrue(Log.isEnabled(LogCategory.PARSER, LogLevel.ERROR));
+		assertFalse(Log.isEnabled(LogCategory.PARSER, LogLevel.INFO));
+		assertFalse(Log.isEnabled(LogCategory.PARTITIONS, LogLevel.ERROR));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testConfigureUnknownCategory() {
+		Log.configure("foo=trace");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testConfigureUnknownLevel() {
+		Log.configure("verbose");
+	}
+	
+	@Test
+	public void testDisabledMessagesAreNotBuilt() {
+		Log.configure("relatedDiffs=debug");
+		Object arg = new Object() {
+			@Override
+			public String toString() {
+				throw new AssertionError("message built");
+			}
+		};
+		
+		Log.trace(LogCategory.RELATED_DIFFS, "relation %s", arg);
+		assertEquals("", this.out.toString());
+	}
+	
+	@Test
+	public void testMessagesWithoutArgumentsAreNotFormatted() {
+		Log.info(LogCategory.PARSER, "100% done");
+		assertEquals("100% done" + System.lineSeparator(), this.out.toString());
+	}
+	
+	@Test
+	public void testAsync() {
+		Log.configure("trace");
+		Log.setAsync(true);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100000; ++i) {
+			Log.trace(LogCategory.USE_VISITOR, "use %d", i);
+			expected.append("use " + i).append(System.lineSeparator());
+		}
+		Log.close();
+		
+		assertEquals(expected.toString(), this.out.toString());
+	}
+}
@@ -0,0 +1,117 @@
+package ccjava.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ccjava.diffparser.LineInterval;
+import ccjava.diffparser.UnifiedDiffRegion;
+import ccjava.javaparser.HeadlessParsingEngine;
+import ccjava.javaparser.Parser;
+
+public class AnalysisBudgetTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testUnlimited() {
+		AnalysisBudget budget = new AnalysisBudget();
+		budget.addAstNodes(Integer.MAX_VALUE);
+		budget.check();
+		
+		assertFalse(budget.isExceeded());
+		assertEquals(Integer.MAX_VALUE, budget.getAstNodes());
+	}
+	
+	@Test
+	public void testTimeLimit() throws InterruptedException {
+		AnalysisBudget budget = new AnalysisBudget();
+		budget.setTimeLimit(10);
+		budget.check();
+		
+		Thread.sleep(20);
+		assertTrue(budget.isExceeded());
+		assertCheckFails(budget);
+	}
+	
+	@Test
+	public void testMaxAstNodes() {
+		AnalysisBudget budget = new AnalysisBudget();
+		budget.setMaxAstNodes(100);
+		budget.addAstNodes(100);
+		
+		try {
+			budget.addAstNodes(1);
+			fail();
+		} catch (BudgetExceededException e) {
+			// expected
+		}
+		assertTrue(budget.isExceeded());
+	}
+	
+	@Test
+	public void testParserStopsWhenExceeded() throws Exception {
+		String sourceDir = this.folder.getRoot().getAbsolutePath();
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tvoid m() { x++; }\n}\n");
+		AnalysisBudget budget = new AnalysisBudget();
+		budget.setMaxAstNodes(5);
+		
+		Parser parser = new Parser(sourceDir, new HeadlessParsingEngine(sourceDir));
+		parser.setBudget(budget);
+		try {
+			parser.parse();
+			fail();
+		} catch (BudgetExceededException e) {
+			// expected
+		} finally {
+			parser.dispose();
+		}
+	}
+	
+	@Test
+	public void testClusterChangesStopsWhenExceeded() throws Exception {
+		String sourceDir = this.folder.getRoot().getAbsolutePath();
+		FileUtils.writeStringToFile(new File(sourceDir, "src/alpha/A.java"),
+				"package alpha;\npublic class A {\n\tint x;\n\tvoid m() { x++; }\n}\n");
+		
+		Parser parser = new Parser(sourceDir, new HeadlessParsingEngine(sourceDir));
+		try {
+			Changeset changeset = parser.parse();
+			changeset.addDiffRegions(Arrays.asList(
+					new UnifiedDiffRegion("src/alpha/A.java", LineInterval.fromNumbers(3, 4))));
+			AnalysisBudget budget = new AnalysisBudget();
+			budget.setTimeLimit(1);
+			Thread.sleep(5);
+			
+			ClusterChanges cc = new ClusterChanges(changeset);
+			cc.setBudget(budget);
+			try {
+				cc.run();
+				fail();
+			} catch (BudgetExceededException e) {
+				// expected
+			}
+		} finally {
+			parser.dispose();
+		}
+	}
+	
+	private void assertCheckFails(AnalysisBudget budget) {
+		try {
+			budget.check();
+			fail();
+		} catch (BudgetExceededException e) {
+			assertTrue(e.getMessage().contains("time limit"));
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package ccjava.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ccjava.diffparser.LineInterval;
+import ccjava.diffparser.UnifiedDiffRegion;
+import ccjava.javaparser.HeadlessParsingEngine;
+import ccjava.javaparser.Parser;
+import ccjava.model.BinaryResults.Table;
+
+public class BinaryExporterTest {
+	private static final String A_PATH = "src/alpha/A.java";
+	private static final String B_PATH = "src/alpha/B.java";
+	private static final String[] CSV_FILES = { "defs.csv", "uses.csv", "diffs.csv", "diffRelations.csv",
+			"partitions.csv", "summary.csv" };
+	private static final List<String> STRING_COLUMNS = Arrays.asList("sourceFile", "name", "associatedDefSourceFile",
+			"sourceFile1", "sourceFile2", "diffSourceFile");
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private Path outputDir;
+	
+	@Before
+	public void setUp() throws Exception {
+		String sourceDir = this.folder.newFolder("sources").getAbsolutePath();
+		this.outputDir = this.folder.newFolder("results").toPath();
+		write(sourceDir, A_PATH, "package alpha;\npublic class A {\n\tpublic int x;\n\tpublic void m() {}\n}\n");
+		write(sourceDir, B_PATH, "package alpha;\npublic class B {\n\tvoid b(A a) {\n\t\ta.m();\n\t\ta.x++;\n\t}\n}\n");
+		
+		Parser parser = new Parser(sourceDir, new HeadlessParsingEngine(sourceDir));
+		try {
+			Changeset changeset = parser.parse();
+			changeset.addDiffRegions(Arrays.asList(
+					new UnifiedDiffRegion(A_PATH, LineInterval.fromNumbers(3, 4)),
+					new UnifiedDiffRegion(B_PATH, LineInterval.fromNumbers(4, 4)),
+					new UnifiedDiffRegion(B_PATH, LineInterval.fromNumbers(5, 5))));
+			ClusterChanges cc = new ClusterChanges(changeset);
+			cc.run();
+			
+			new CSVExporter(changeset, cc).exportAsCSV(this.outputDir);
+			new BinaryExporter(changeset, cc).export(this.outputDir.resolve("results.bin"));
+		} finally {
+			parser.dispose();
+		}
+	}
+	
+	@Test
+	public void testSameResultsAsCSV() throws IOException {
+		BinaryResults results = BinaryResults.read(this.outputDir.resolve("results.bin"));
+		
+		for (Table t : Table.values()) {
+			List<String> csvLines = Files.readAllLines(this.outputDir.resolve(CSV_FILES[t.ordinal()]),
+					Charset.defaultCharset());
+			assertEquals(csvLines.get(0), join(t.getColumns()));
+			assertEquals(csvLines.size() - 1, results.getRowCount(t));
+			for (int row = 0; row < results.getRowCount(t); ++row) {
+				List<String> fields = new ArrayList<String>();
+				for (String column : t.getColumns()) {
+					fields.add(toCSVField(results, t, column, row));
+				}
+				assertEquals(csvLines.get(row + 1), join(fields));
+			}
+		}
+		
+		assertTrue(results.getRowCount(Table.DIFF_RELATIONS) > 0);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadNotBinaryResults() throws IOException {
+		BinaryResults.read(this.outputDir.resolve("defs.csv"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadTruncated() throws IOException {
+		Path file = this.outputDir.resolve("results.bin");
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+		BinaryResults.read(file);
+	}
+	
+	private String toCSVField(BinaryResults results, Table t, String column, int row) {
+		int value = results.getInt(t, column, row);
+		if (STRING_COLUMNS.contains(column)) {
+			return results.getString(value);
+		} else if (column.startsWith("is")) {
+			return Boolean.toString(results.getBoolean(t, column, row));
+		} else if (column.equals("relationType")) {
+			return RelatedDiffPair.DiffRelationType.values()[value].toString();
+		} else if (column.equals("enclosingMethodDefId") && value == 0) {
+			return "null";
+		}
+		return Integer.toString(value);
+	}
+	
+	private String join(List<String> fields) {
+		StringBuilder sb = new StringBuilder();
+		for (String f : fields) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(f);
+		}
+		return sb.toString();
+	}
+	
+	private void write(String sourceDir, String path, String contents) throws IOException {
+		FileUtils.writeStringToFile(new File(sourceDir, path), contents);
+	}
+}
@@ -0,0 +1,63 @@
+package ccjava.model;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BindingKeyIndexTest {
+	private Definition d1;
+	private Definition d2;
+	private Definition d2SameKey;
+
+	@Before
+	public void setUp() {
+		SourceFile sf1 = new SourceFile("sf1.java", "sf1.java", mock(LineToCharacterIntervalConverter.class));
+		this.d1 = new Definition("var1", sf1, CharacterInterval.fromPositions(20, 200), "key1");
+		this.d2 = new Definition("var2", sf1, CharacterInterval.fromPositions(300, 400), "key2");
+		this.d2SameKey = new Definition("var2", sf1, CharacterInterval.fromPositions(500, 600), "key2");
+	}
+	
+	@Test
+	public void testLookup() {
+		BindingKeyIndex index = new BindingKeyIndex(Arrays.asList(d1, d2));
+		assertSame(d1, index.lookup("key1"));
+		assertSame(d2, index.lookup("key2"));
+		assertNull(index.lookup("key3"));
+		assertEquals(2, index.size());
+	}
+	
+	@Test
+	public void testFirstRegisteredDefinitionIsKept() {
+		BindingKeyIndex index = new BindingKeyIndex(Arrays.asList(d2, d2SameKey));
+		assertSame(d2, index.lookup("key2"));
+		assertFalse(index.register(d2SameKey));
+		assertTrue(index.register(d2));
+	}
+	
+	@Test
+	public void testUnregister() {
+		BindingKeyIndex index = new BindingKeyIndex(Arrays.asList(d1, d2));
+		assertFalse(index.unregister(d2SameKey));
+		assertSame(d2, index.lookup("key2"));
+		assertTrue(index.unregister(d2));
+		assertNull(index.lookup("key2"));
+		assertTrue(index.register(d2SameKey));
+		assertSame(d2SameKey, index.lookup("key2"));
+	}
+	
+	@Test
+	public void testLookupById() {
+		BindingKeyTable table = new BindingKeyTable();
+		SourceFile sf = new SourceFile("sf.java", "sf.java", mock(LineToCharacterIntervalConverter.class));
+		Definition d = new Definition("m", sf, CharacterInterval.fromPositions(0, 10), table, table.getId("La/B;.m()V"));
+		BindingKeyIndex index = new BindingKeyIndex(table);
+		index.register(d);
+		assertSame(d, index.lookup(d.getBindingKeyId()));
+		assertSame(d, index.lookup("La/B;.m()V"));
+		assertNull(index.lookup(table.getId("La/B;.n()V")));
+	}
+}
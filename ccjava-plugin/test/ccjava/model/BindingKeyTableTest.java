@@ -0,0 +1,39 @@
+package ccjava.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BindingKeyTableTest {
+	@Test
+	public void testIdsAreDense() {
+		BindingKeyTable table = new BindingKeyTable();
+		for (int i = 0; i < 100; ++i) {
+			assertEquals(i, table.getId("key" + i));
+		}
+		assertEquals(100, table.size());
+	}
+	
+	@Test
+	public void testSameKeySameId() {
+		BindingKeyTable table = new BindingKeyTable();
+		int id = table.getId("La/B;.m()V");
+		table.getId("La/B;.n()V");
+		assertEquals(id, table.getId(new String("La/B;.m()V")));
+		assertEquals(id, table.lookupId("La/B;.m()V"));
+		assertEquals("La/B;.m()V", table.getKey(id));
+		assertEquals(2, table.size());
+	}
+	
+	@Test
+	public void testLookupIdDoesNotAssign() {
+		BindingKeyTable table = new BindingKeyTable();
+		assertEquals(BindingKeyTable.NO_ID, table.lookupId("key"));
+		assertEquals(0, table.size());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testGetKeyUnknownId() {
+		new BindingKeyTable().getKey(0);
+	}
+}
@@ -0,0 +1,55 @@
+package ccjava.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CSVWriterTest {
+	private static final String NL = System.lineSeparator();
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testRows() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("test.csv");
+		try (CSVWriter csv = new CSVWriter(file)) {
+			csv.writeHeader("id,name,flag");
+			csv.write(1).write("a").write(true).endRow();
+			csv.write(2).write("b").write(false).endRow();
+		}
+		
+		assertEquals("id,name,flag" + NL + "1,a,true" + NL + "2,b,false" + NL, read(file));
+	}
+	
+	@Test
+	public void testInts() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("test.csv");
+		try (CSVWriter csv = new CSVWriter(file)) {
+			csv.write(0).write(-7).write(1234567890).write(Integer.MIN_VALUE).write(Integer.MAX_VALUE).endRow();
+		}
+		
+		assertEquals("0,-7,1234567890,-2147483648,2147483647" + NL, read(file));
+	}
+	
+	@Test
+	public void testQuoting() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("test.csv");
+		try (CSVWriter csv = new CSVWriter(file)) {
+			csv.write("a,b").write("say \"hi\"").write("two\nlines").write("").write((Object) null).endRow();
+		}
+		
+		assertEquals("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",,null" + NL, read(file));
+	}
+	
+	private String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), Charset.defaultCharset());
+	}
+}
@@ -0,0 +1,120 @@
+package ccjava.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ccjava.diffparser.UnifiedDiffRegion;
+
+public class ChangesetTest {
+	private SourceFile sfA;
+	private SourceFile sfB;
+	private Changeset changeset;
+	
+	@Before
+	public void setUp() {
+		this.sfA = new SourceFile("a/A.java", "a/A.java", mock(LineToCharacterIntervalConverter.class));
+		this.sfB = new SourceFile("b/B.java", "b/B.java", mock(LineToCharacterIntervalConverter.class));
+		this.sfA.addDefinition(new Definition("a1", sfA, CharacterInterval.fromPositions(10, 20), "La;.a1"));
+		this.sfA.addDefinition(new Definition("a2", sfA, CharacterInterval.fromPositions(30, 40), "La;.a2"));
+		this.sfB.addDefinition(new Definition("b1", sfB, CharacterInterval.fromPositions(10, 20), "Lb;.b1"));
+		this.sfB.addUse(new Use("a1", sfB, CharacterInterval.fromPositions(50, 52), "La;.a1", null));
+		
+		Map<String, SourceFile> sourceFiles = new LinkedHashMap<String, SourceFile>();
+		sourceFiles.put(sfB.getPath(), sfB);
+		sourceFiles.put(sfA.getPath(), sfA);
+		this.changeset = new Changeset(sourceFiles);
+	}
+	
+	@Test
+	public void testCollectionsFollowSourceFilePaths() {
+		assertEquals(Arrays.asList(sfA, sfB), new ArrayList<SourceFile>(changeset.getSourceFiles()));
+		
+		Iterator<Definition> it = changeset.getDefinitions().iterator();
+		assertEquals("a1", it.next().getName());
+		assertEquals("a2", it.next().getName());
+		assertEquals("b1", it.next().getName());
+		assertFalse(it.hasNext());
+		
+		assertEquals(1, changeset.getUses().size());
+	}
+	
+	@Test
+	public void testFreeze() {
+		assertFalse(changeset.isFrozen());
+		assertSame(changeset, changeset.freeze());
+		assertTrue(changeset.isFrozen());
+		
+		assertEquals(3, changeset.getDefinitions().size());
+		assertEquals(1, changeset.getUses().size());
+		assertEquals(0, changeset.getDiffRegions().size());
+		assertSame(changeset.getDefinitions(), changeset.getDefinitions());
+		assertSame(changeset.getUses(), changeset.getUses());
+		assertSame(changeset.getDiffRegions(), changeset.getDiffRegions());
+	}
+	
+	@Test
+	public void testFreezeTwice() {
+		changeset.freeze();
+		Object defs = changeset.getDefinitions();
+		
+		changeset.freeze();
+		assertSame(defs, changeset.getDefinitions());
+	}
+	
+	@Test
+	public void testFreezeAssignsIdsByPathAndPosition() {
+		Definition a0 = new Definition("a0", sfA, CharacterInterval.fromPositions(0, 5), "La;.a0");
+		sfA.addDefinition(a0);
+		changeset.freeze();
+		
+		assertSame(a0, changeset.getDefinitions().iterator().next());
+		int id = 1;
+		for (Definition d : changeset.getDefinitions()) {
+			assertEquals(id++, d.getId());
+		}
+		assertEquals(1, changeset.getUses().iterator().next().getId());
+	}
+	
+	@Test
+	public void testIdsDontDependOnOtherChangesets() {
+		changeset.freeze();
+		
+		SourceFile sfC = new SourceFile("c/C.java", "c/C.java", mock(LineToCharacterIntervalConverter.class));
+		Definition c1 = new Definition("c1", sfC, CharacterInterval.fromPositions(10, 20), "Lc;.c1");
+		sfC.addDefinition(c1);
+		Map<String, SourceFile> sourceFiles = new LinkedHashMap<String, SourceFile>();
+		sourceFiles.put(sfC.getPath(), sfC);
+		new Changeset(sourceFiles).freeze();
+		
+		assertEquals(1, c1.getId());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testIdBeforeFreeze() {
+		changeset.getDefinitions().iterator().next().getId();
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testAddDiffRegionsAfterFreeze() {
+		changeset.freeze();
+		changeset.addDiffRegions(new ArrayList<UnifiedDiffRegion>());
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFrozenCollectionsAreUnmodifiable() {
+		changeset.freeze();
+		changeset.getDefinitions().clear();
+	}
+}
@@ -0,0 +1,54 @@
+package ccjava.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CharacterIntervalSetTest {
+	@Test
+	public void testEmpty() {
+		CharacterIntervalSet s = new CharacterIntervalSet(new ArrayList<CharacterInterval>());
+		Assert.assertTrue(s.isEmpty());
+		Assert.assertFalse(s.intersects(0, 100));
+	}
+	
+	@Test
+	public void testIntersects() {
+		CharacterIntervalSet s = create(10, 19, 40, 49);
+		Assert.assertFalse(s.intersects(0, 9));
+		Assert.assertTrue(s.intersects(0, 10));
+		Assert.assertTrue(s.intersects(15, 15));
+		Assert.assertTrue(s.intersects(19, 25));
+		Assert.assertFalse(s.intersects(20, 39));
+		Assert.assertTrue(s.intersects(20, 40));
+		Assert.assertTrue(s.intersects(0, 100));
+		Assert.assertFalse(s.intersects(50, 100));
+		Assert.assertTrue(s.intersects(CharacterInterval.fromPositions(45, 60)));
+	}
+	
+	@Test
+	public void testOverlappingAndAdjacentIntervalsAreMerged() {
+		CharacterIntervalSet s = create(30, 39, 10, 19, 15, 24, 25, 29, 50, 59);
+		Assert.assertEquals(2, s.size());
+		Assert.assertTrue(s.intersects(24, 25));
+		Assert.assertFalse(s.intersects(40, 49));
+		Assert.assertTrue(s.intersects(40, 50));
+	}
+	
+	@Test
+	public void testContainedIntervalIsMerged() {
+		CharacterIntervalSet s = create(10, 100, 20, 30);
+		Assert.assertEquals(1, s.size());
+		Assert.assertTrue(s.intersects(50, 60));
+	}
+	
+	private CharacterIntervalSet create(int... positions) {
+		List<CharacterInterval> intervals = new ArrayList<CharacterInterval>();
+		for (int i = 0; i < positions.length; i += 2) {
+			intervals.add(CharacterInterval.fromPositions(positions[i], positions[i + 1]));
+		}
+		return new CharacterIntervalSet(intervals);
+	}
+}
@@ -0,0 +1,89 @@
+package ccjava.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntUnionFindTest {
+	@Test
+	public void testSingletons() {
+		IntUnionFind uf = new IntUnionFind(3);
+		
+		assertEquals(3, uf.getNumberOfSets());
+		assertEquals(0, uf.find(0));
+		assertEquals(2, uf.find(2));
+		assertArrayEquals(new int[][] { { 0 }, { 1 }, { 2 } }, uf.getSets());
+	}
+	
+	@Test
+	public void testEmpty() {
+		IntUnionFind uf = new IntUnionFind(0);
+		
+		assertEquals(0, uf.getNumberOfSets());
+		assertEquals(0, uf.getSets().length);
+	}
+	
+	@Test
+	public void testUnion() {
+		IntUnionFind uf = new IntUnionFind(6);
+		
+		assertTrue(uf.union(4, 1));
+		assertTrue(uf.union(5, 3));
+		assertTrue(uf.union(1, 5));
+		assertFalse(uf.union(3, 4));
+		
+		assertEquals(3, uf.getNumberOfSets());
+		assertEquals(uf.find(1), uf.find(3));
+		assertEquals(uf.find(4), uf.find(5));
+		assertFalse(uf.find(0) == uf.find(1));
+		assertArrayEquals(new int[][] { { 0 }, { 1, 3, 4, 5 }, { 2 } }, uf.getSets());
+	}
+	
+	@Test
+	public void testSameSetsAsNaiveLabeling() {
+		Random random = new Random(42);
+		int size = 1000;
+		IntUnionFind uf = new IntUnionFind(size);
+		int[] labels = new int[size];
+		for (int i = 0; i < size; ++i) {
+			labels[i] = i;
+		}
+		
+		for (int k = 0; k < 700; ++k) {
+			int a = random.nextInt(size);
+			int b = random.nextInt(size);
+			assertEquals(labels[a] != labels[b], uf.union(a, b));
+			
+			int oldLabel = labels[b];
+			for (int i = 0; i < size; ++i) {
+				if (labels[i] == oldLabel) {
+					labels[i] = labels[a];
+				}
+			}
+		}
+		
+		for (int a = 0; a < size; a += 7) {
+			for (int b = 0; b < size; b += 3) {
+				assertEquals(labels[a] == labels[b], uf.find(a) == uf.find(b));
+			}
+		}
+		
+		int elements = 0;
+		int previousFirst = -1;
+		for (int[] set : uf.getSets()) {
+			assertTrue(set[0] > previousFirst);
+			previousFirst = set[0];
+			for (int i = 0; i < set.length; ++i) {
+				assertEquals(labels[set[0]], labels[set[i]]);
+				assertTrue(i == 0 || set[i] > set[i - 1]);
+			}
+			elements += set.length;
+		}
+		assertEquals(size, elements);
+	}
+}
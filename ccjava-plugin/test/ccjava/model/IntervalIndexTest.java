@@ -0,0 +1,69 @@
+package ccjava.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntervalIndexTest {
+	private static class Item implements Positioned {
+		private CharacterInterval position;
+		
+		public Item(int firstCharPos, int lastCharPos) {
+			this.position = CharacterInterval.fromPositions(firstCharPos, lastCharPos);
+		}
+		
+		@Override
+		public CharacterInterval getPosition() {
+			return this.position;
+		}
+	}
+	
+	@Test
+	public void testEmpty() {
+		IntervalIndex<Item> index = new IntervalIndex<Item>(new ArrayList<Item>());
+		Assert.assertTrue(index.findIntersecting(CharacterInterval.fromPositions(0, 100)).isEmpty());
+	}
+	
+	@Test
+	public void testFindIntersecting() {
+		Item outer = new Item(0, 100);
+		Item a = new Item(10, 20);
+		Item b = new Item(15, 30);
+		Item c = new Item(50, 60);
+		IntervalIndex<Item> index = new IntervalIndex<Item>(Arrays.asList(c, outer, a, b));
+		
+		Assert.assertEquals(Arrays.asList(c, outer), index.findIntersecting(CharacterInterval.fromPositions(55, 55)));
+		Assert.assertEquals(Arrays.asList(outer, a, b), index.findIntersecting(CharacterInterval.fromPositions(18, 18)));
+		Assert.assertEquals(Arrays.asList(outer), index.findIntersecting(CharacterInterval.fromPositions(31, 49)));
+		Assert.assertEquals(Arrays.asList(c, outer, b), index.findIntersecting(CharacterInterval.fromPositions(21, 50)));
+		Assert.assertTrue(index.findIntersecting(CharacterInterval.fromPositions(101, 200)).isEmpty());
+	}
+	
+	@Test
+	public void testSameResultsAsLinearScan() {
+		Random random = new Random(42);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 0; i < 500; ++i) {
+			int first = random.nextInt(10000);
+			items.add(new Item(first, first + random.nextInt(random.nextBoolean() ? 20 : 2000)));
+		}
+		IntervalIndex<Item> index = new IntervalIndex<Item>(items);
+		
+		for (int q = 0; q < 500; ++q) {
+			int first = random.nextInt(12000);
+			CharacterInterval span = CharacterInterval.fromPositions(first, first + random.nextInt(300));
+			
+			List<Item> expected = new ArrayList<Item>();
+			for (Item item : items) {
+				if (item.getPosition().intersects(span)) {
+					expected.add(item);
+				}
+			}
+			Assert.assertEquals(expected, index.findIntersecting(span));
+		}
+	}
+}
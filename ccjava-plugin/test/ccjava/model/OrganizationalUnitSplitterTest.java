@@ -0,0 +1,109 @@
+package ccjava.model;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ccjava.diffparser.LineInterval;
+
+public class OrganizationalUnitSplitterTest {
+	// Every line has LINE_LENGTH characters, including the line break.
+	private static final int LINE_LENGTH = 10;
+	private static final int NUM_LINES = 200;
+	
+	private static class FixedLengthLinesConverter implements LineToCharacterIntervalConverter {
+		@Override
+		public CharacterInterval getCharacterInterval(LineInterval lines) {
+			return CharacterInterval.fromPositions((lines.getFirstLineNumber() - 1) * LINE_LENGTH,
+					Math.min(lines.getLastLineNumber(), NUM_LINES) * LINE_LENGTH - 1);
+		}
+
+		@Override
+		public int getLineNumber(int characterPosition) {
+			return characterPosition / LINE_LENGTH + 1;
+		}
+	}
+	
+	private SourceFile sourceFile = new SourceFile("sf.java", "sf.java", mock(LineToCharacterIntervalConverter.class));
+	private LineToCharacterIntervalConverter converter = new FixedLengthLinesConverter();
+	
+	@Test
+	public void testNoOrganizationalUnits() {
+		List<Definition> defs = Arrays.asList(definition(12, 35, false));
+		Assert.assertEquals(Arrays.asList(LineInterval.fromNumbers(2, 5)), split(2, 5, defs));
+	}
+	
+	@Test
+	public void testSplitsBeforeOrganizationalUnitStarts() {
+		List<Definition> defs = Arrays.asList(
+				definition(0, 199, true), // class, lines 1-20
+				definition(30, 59, true), // method, lines 4-6
+				definition(61, 89, true), // method, lines 7-9
+				definition(65, 70, false)); // variable, line 7
+		Assert.assertEquals(Arrays.asList(LineInterval.fromNumbers(1, 3), LineInterval.fromNumbers(4, 6), 
+				LineInterval.fromNumbers(7, 12)), split(1, 12, defs));
+		Assert.assertEquals(Arrays.asList(LineInterval.fromNumbers(5, 6), LineInterval.fromNumbers(7, 7)), 
+				split(5, 7, defs));
+	}
+	
+	@Test
+	public void testSameResultsAsGrowingLineByLine() {
+		Random random = new Random(7);
+		for (int t = 0; t < 200; ++t) {
+			List<Definition> defs = new ArrayList<Definition>();
+			for (int i = 0; i < 15; ++i) {
+				int first = random.nextInt(NUM_LINES * LINE_LENGTH);
+				int last = Math.min(first + random.nextInt(400), NUM_LINES * LINE_LENGTH - 1);
+				defs.add(definition(first, last, random.nextBoolean()));
+			}
+			int firstLine = 1 + random.nextInt(NUM_LINES);
+			int lastLine = Math.min(NUM_LINES, firstLine + random.nextInt(60));
+			
+			Assert.assertEquals(splitGrowingLineByLine(LineInterval.fromNumbers(firstLine, lastLine), defs), 
+					split(firstLine, lastLine, defs));
+		}
+	}
+	
+	private List<LineInterval> split(int firstLine, int lastLine, List<Definition> defs) {
+		return new OrganizationalUnitSplitter(converter).split(LineInterval.fromNumbers(firstLine, lastLine), defs);
+	}
+	
+	private Definition definition(int firstCharPos, int lastCharPos, boolean organizationalUnit) {
+		Definition d = new Definition("d", sourceFile, CharacterInterval.fromPositions(firstCharPos, lastCharPos), "key");
+		d.setMethodDefinition(organizationalUnit);
+		return d;
+	}
+	
+	// Previous algorithm, which adds one line at a time to the current span.
+	private List<LineInterval> splitGrowingLineByLine(LineInterval originalSpan, List<Definition> defs) {
+		List<LineInterval> splitSpans = new ArrayList<LineInterval>();
+		LineInterval currentSpan = LineInterval.fromNumberAndLength(originalSpan.getFirstLineNumber(), 1);
+		while (originalSpan.contains(currentSpan)) {
+			LineInterval newSpan = LineInterval.fromNumberAndLength(currentSpan.getFirstLineNumber(), currentSpan.getLength() + 1);
+			if (!originalSpan.contains(newSpan) || countOrganizationalUnits(newSpan, defs) > countOrganizationalUnits(currentSpan, defs)) {
+				splitSpans.add(currentSpan);
+				currentSpan = LineInterval.fromNumberAndLength(currentSpan.getLastLineNumber() + 1, 1);
+			} else {
+				currentSpan = newSpan;
+			}
+		}
+		return splitSpans;
+	}
+	
+	private int countOrganizationalUnits(LineInterval lines, List<Definition> defs) {
+		CharacterInterval span = converter.getCharacterInterval(lines);
+		int count = 0;
+		for (Definition d : defs) {
+			if (d.isOrganizationalUnit() && d.getPosition().intersects(span)) {
+				++count;
+			}
+		}
+		return count;
+	}
+}
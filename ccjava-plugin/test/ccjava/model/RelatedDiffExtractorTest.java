@@ -0,0 +1,143 @@
+package ccjava.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ccjava.diffparser.LineInterval;
+
+public class RelatedDiffExtractorTest {
+	private SourceFile sf;
+	private int nextPosition;
+	
+	@Before
+	public void setUp() {
+		this.sf = new SourceFile("A.java", "A.java", mock(LineToCharacterIntervalConverter.class));
+		this.nextPosition = 0;
+	}
+	
+	@Test
+	public void testDefUse() {
+		Definition d = definition(false);
+		DiffRegion defDR = diffRegion(Arrays.asList(d), new ArrayList<Use>());
+		DiffRegion useDR = diffRegion(new ArrayList<Definition>(), Arrays.asList(use(d)));
+		
+		List<RelatedDiffPair> rdps = extract(Arrays.asList(defDR, useDR), 1);
+		assertEquals(1, rdps.size());
+		assertPair(defDR, useDR, RelatedDiffPair.DiffRelationType.DEF_USE, rdps.get(0));
+	}
+	
+	@Test
+	public void testUseUse() {
+		Definition d = definition(false);
+		DiffRegion dr1 = diffRegion(new ArrayList<Definition>(), Arrays.asList(use(d)));
+		DiffRegion dr2 = diffRegion(new ArrayList<Definition>(), Arrays.asList(use(d)));
+		DiffRegion dr3 = diffRegion(new ArrayList<Definition>(), Arrays.asList(use(definition(false))));
+		
+		List<RelatedDiffPair> rdps = extract(Arrays.asList(dr1, dr2, dr3), 1);
+		assertEquals(1, rdps.size());
+		assertPair(dr1, dr2, RelatedDiffPair.DiffRelationType.USE_USE, rdps.get(0));
+	}
+	
+	@Test
+	public void testSameEnclosingMethod() {
+		Definition m = definition(true);
+		DiffRegion dr1 = diffRegion(Arrays.asList(m), new ArrayList<Use>());
+		DiffRegion dr2 = diffRegion(Arrays.asList(m), new ArrayList<Use>());
+		
+		List<RelatedDiffPair> rdps = extract(Arrays.asList(dr1, dr2), 1);
+		assertEquals(1, rdps.size());
+		assertPair(dr1, dr2, RelatedDiffPair.DiffRelationType.SAME_ENCLOSING_METHOD, rdps.get(0));
+	}
+	
+	@Test
+	public void testDefUseHasPriority() {
+		Definition m = definition(true);
+		DiffRegion dr1 = diffRegion(Arrays.asList(m), new ArrayList<Use>());
+		DiffRegion dr2 = diffRegion(Arrays.asList(m), Arrays.asList(use(m)));
+		
+		List<RelatedDiffPair> rdps = extract(Arrays.asList(dr1, dr2), 1);
+		assertEquals(1, rdps.size());
+		assertPair(dr1, dr2, RelatedDiffPair.DiffRelationType.DEF_USE, rdps.get(0));
+	}
+	
+	@Test
+	public void testSameResultWithMultipleThreads() {
+		Random random = new Random(42);
+		List<Definition> defs = new ArrayList<Definition>();
+		for (int i = 0; i < 50; ++i) {
+			defs.add(definition(random.nextInt(4) == 0));
+		}
+		
+		List<DiffRegion> drs = new ArrayList<DiffRegion>();
+		for (int i = 0; i < 300; ++i) {
+			Set<Definition> defsInside = new HashSet<Definition>();
+			if (random.nextInt(5) == 0) {
+				defsInside.add(defs.get(random.nextInt(defs.size())));
+			}
+			List<Use> usesInside = new ArrayList<Use>();
+			for (int j = random.nextInt(4); j > 0; --j) {
+				usesInside.add(use(defs.get(random.nextInt(defs.size()))));
+			}
+			drs.add(diffRegion(defsInside, usesInside));
+		}
+		
+		List<RelatedDiffPair> expected = extract(drs, 1);
+		for (int threads : new int[] { 2, 4, 8 }) {
+			List<RelatedDiffPair> actual = extract(drs, threads);
+			
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); ++i) {
+				assertPair(expected.get(i).getFirstDiffRegion(), expected.get(i).getSecondDiffRegion(),
+						expected.get(i).getRelationType(), actual.get(i));
+			}
+		}
+	}
+	
+	private List<RelatedDiffPair> extract(List<DiffRegion> drs, int threads) {
+		return new ArrayList<RelatedDiffPair>(new RelatedDiffExtractor(drs, threads).extract());
+	}
+	
+	private void assertPair(DiffRegion dr1, DiffRegion dr2, RelatedDiffPair.DiffRelationType type,
+			RelatedDiffPair rdp) {
+		assertEquals(dr1, rdp.getFirstDiffRegion());
+		assertEquals(dr2, rdp.getSecondDiffRegion());
+		assertEquals(type, rdp.getRelationType());
+	}
+	
+	private Definition definition(boolean method) {
+		int position = this.nextPosition++;
+		Definition d = new Definition("d" + position, sf, CharacterInterval.fromPositions(position, position),
+				"bindkey" + position);
+		d.setMethodDefinition(method);
+		return d;
+	}
+	
+	private Use use(Definition d) {
+		int position = this.nextPosition++;
+		return new Use(d.getName(), sf, CharacterInterval.fromPositions(position, position), d.getBindingKey(), d);
+	}
+	
+	private DiffRegion diffRegion(Iterable<Definition> defsInside, Iterable<Use> usesInside) {
+		int position = this.nextPosition++;
+		Set<Definition> defs = new HashSet<Definition>();
+		for (Definition d : defsInside) {
+			defs.add(d);
+		}
+		Set<Use> uses = new HashSet<Use>();
+		for (Use u : usesInside) {
+			uses.add(u);
+		}
+		return new DiffRegion(sf, CharacterInterval.fromPositions(position, position),
+				LineInterval.fromNumbers(1, 1), defs, uses);
+	}
+}
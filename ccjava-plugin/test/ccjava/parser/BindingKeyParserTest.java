@@ -15,4 +15,30 @@ public class BindingKeyParserTest {
 		Assert.assertEquals("eclipse", BindingKeyParser.parse("ecl<<45>>ips<<01>>e"));
 		Assert.assertEquals("1234567", BindingKeyParser.parse("123<d<ef<g>>h>45<<k>>6<>7"));
 	}
+	
+	@Test()
+	public void testParseReplacesDotAfterParameterBrackets() {
+		Assert.assertEquals("Lccjava/Map$Entry;", BindingKeyParser.parse("Lccjava/Map<TK;TV;>.Entry;"));
+		Assert.assertEquals("La/B$C$D;", BindingKeyParser.parse("La/B<TT;>.C<TU;>.D;"));
+		Assert.assertEquals("La/B.c", BindingKeyParser.parse("La/B.c"));
+	}
+	
+	@Test()
+	public void testNormalizeReturnsCanonicalInstances() {
+		BindingKeyParser parser = new BindingKeyParser(100);
+		String k1 = parser.normalize("La/B<TT;>;.m()V");
+		String k2 = parser.normalize(new String("La/B<TT;>;.m()V"));
+		String k3 = parser.normalize("La/B<Ljava/lang/String;>;.m()V");
+		Assert.assertEquals("La/B;.m()V", k1);
+		Assert.assertSame(k1, k2);
+		Assert.assertSame(k1, k3);
+	}
+	
+	@Test()
+	public void testNormalizeWithFullCache() {
+		BindingKeyParser parser = new BindingKeyParser(2);
+		for (int i = 0; i < 10; ++i) {
+			Assert.assertEquals("La/B" + i + ";", parser.normalize("La/B" + i + "<TT;>;"));
+		}
+	}
 }
@@ -0,0 +1,149 @@
+package ccjava.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ccjava.javaparser.HeadlessParsingEngine;
+import ccjava.javaparser.Parser;
+import ccjava.model.Changeset;
+import ccjava.model.Definition;
+import ccjava.model.SourceFile;
+import ccjava.model.Use;
+
+public class ParserUpdateTest {
+	private static final String A_PATH = "src/alpha/A.java";
+	private static final String B_PATH = "src/alpha/B.java";
+	private static final String C_PATH = "src/gamma/C.java";
+	private static final String D_PATH = "src/gamma/D.java";
+	private static final String E_PATH = "src/gamma/E.java";
+	private static final String S_PATH = "src/alpha/S.java";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private String sourceDir;
+	private List<Parser> parsers;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.sourceDir = this.folder.getRoot().getAbsolutePath();
+		this.parsers = new ArrayList<Parser>();
+		
+		write(A_PATH, "package alpha;\npublic class A {\n\tpublic int x;\n\tpublic void m() {}\n}\n");
+		write(B_PATH, "package alpha;\npublic class B {\n\tvoid b(A a) {\n\t\ta.m();\n\t\ta.x++;\n\t}\n}\n");
+		write(C_PATH, "package gamma;\npublic class C {\n\tint y;\n\tvoid c() {\n\t\ty++;\n\t}\n}\n");
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		for (Parser p : this.parsers) {
+			p.dispose();
+		}
+	}
+	
+	@Test
+	public void testUpdateWithoutChanges() throws Exception {
+		Parser parser = newParser();
+		Changeset before = parser.parse();
+		Changeset after = parser.update(Collections.<String>emptyList());
+		
+		assertEquals(dump(before), dump(after));
+		assertNotSame(before.getSourceFile(C_PATH), after.getSourceFile(C_PATH));
+	}
+	
+	@Test
+	public void testUpdateChangedDefinition() throws Exception {
+		Parser parser = newParser();
+		parser.parse();
+		
+		write(A_PATH, "package alpha;\npublic class A {\n\tpublic int x;\n\tpublic void renamed() {}\n}\n");
+		Changeset updated = parser.update(Arrays.asList(A_PATH));
+		
+		assertEquals(dump(newParser().parse()), dump(updated));
+		for (Use u : updated.getSourceFile(B_PATH).getUses()) {
+			if (u.getName().equals("m")) {
+				assertNull(u.getAssociatedDefinition());
+			}
+		}
+	}
+	
+	@Test
+	public void testUpdateAddedDefinition() throws Exception {
+		Parser parser = newParser();
+		parser.parse();
+		
+		write(A_PATH, "package alpha;\npublic class A {\n\tpublic int z;\n\tpublic int x;\n\tpublic void m() {}\n}\n");
+		write(C_PATH, "package gamma;\npublic class C {\n\tint y;\n\tvoid c() {\n\t\ty--;\n\t\ty++;\n\t}\n}\n");
+		Changeset updated = parser.update(Arrays.asList(A_PATH, C_PATH));
+		
+		assertEquals(dump(newParser().parse()), dump(updated));
+	}
+	
+	@Test
+	public void testUpdateNewOverride() throws Exception {
+		write(S_PATH, "package alpha;\npublic class S {\n\tpublic void foo() {}\n}\n");
+		write(A_PATH, "package alpha;\npublic class A extends S {\n\tpublic int x;\n\tpublic void m() {}\n}\n");
+		write(E_PATH, "package gamma;\npublic class E {\n\tpublic static alpha.A newA() { return null; }\n}\n");
+		// D doesn't name A, so only its call of S.foo() depends on A
+		write(D_PATH, "package gamma;\npublic class D {\n\tvoid d() {\n\t\tE.newA().foo();\n\t}\n}\n");
+		Parser parser = newParser();
+		parser.parse();
+		
+		write(A_PATH, "package alpha;\npublic class A extends S {\n\tpublic int x;\n\tpublic void m() {}\n"
+				+ "\tpublic void foo() {}\n}\n");
+		Changeset updated = parser.update(Arrays.asList(A_PATH));
+		
+		assertEquals(dump(newParser().parse()), dump(updated));
+		for (Use u : updated.getSourceFile(D_PATH).getUses()) {
+			if (u.getName().equals("foo")) {
+				assertEquals(A_PATH, u.getAssociatedDefinition().getSourceFile().getPath());
+			}
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testUpdateBeforeParse() throws Exception {
+		newParser().update(Arrays.asList(A_PATH));
+	}
+	
+	private Parser newParser() {
+		Parser parser = new Parser(this.sourceDir, new HeadlessParsingEngine(this.sourceDir));
+		parser.setIgnoreUsesWithoutAssociatedDefinitions(false);
+		this.parsers.add(parser);
+		return parser;
+	}
+	
+	private void write(String path, String code) throws Exception {
+		FileUtils.writeStringToFile(new File(this.sourceDir, path), code);
+	}
+	
+	private List<String> dump(Changeset changeset) {
+		List<String> lines = new ArrayList<String>();
+		for (SourceFile sf : changeset.getSourceFiles()) {
+			for (Definition d : sf.getDefinitions()) {
+				lines.add(String.format("def %s %s %s", sf.getPath(), d.getName(), d.getPosition()));
+			}
+			for (Use u : sf.getUses()) {
+				Definition d = u.getAssociatedDefinition();
+				lines.add(String.format("use %s %s %s -> %s", sf.getPath(), u.getName(), u.getPosition(), 
+						d != null ? d.getSourceFile().getPath() + " " + d.getPosition() : null));
+			}
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+}